@@ -1,12 +1,28 @@
 package dev.splityosis.nucleuscore;
 
 import dev.splityosis.nucleuscore.commands.CommandsCommandBranch;
+import dev.splityosis.nucleuscore.commands.DatabaseCommandBranch;
 import dev.splityosis.nucleuscore.commands.ModulesCommandBranch;
 import dev.splityosis.nucleuscore.commands.NucleusCommandBranch;
+import dev.splityosis.nucleuscore.commands.ProfileCommandBranch;
 import dev.splityosis.nucleuscore.exceptions.UnsupportedDatabaseType;
+import dev.splityosis.nucleuscore.metrics.CommandProfiler;
+import dev.splityosis.nucleuscore.metrics.ListenerProfiler;
+import dev.splityosis.nucleuscore.metrics.MetricsExporter;
+import dev.splityosis.nucleuscore.metrics.MetricsRegistry;
+import dev.splityosis.nucleuscore.metrics.NucleusMetrics;
 import dev.splityosis.nucleuscore.module.ModuleLoader;
+import dev.splityosis.nucleuscore.scheduler.ExecutorSettings;
+import dev.splityosis.nucleuscore.scheduler.TimingWheel;
+import dev.splityosis.nucleuscore.session.PlayerSessionService;
+import dev.splityosis.nucleuscore.storage.ConfigPersistenceService;
 import dev.splityosis.nucleuscore.storage.DatabaseConnectionManager;
+import dev.splityosis.nucleuscore.storage.DatabaseExecutor;
+import dev.splityosis.nucleuscore.storage.DatabasePoolSettings;
+import dev.splityosis.nucleuscore.storage.DatabaseType;
 import dev.splityosis.nucleuscore.storage.HikariDatabaseConnectionManager;
+import dev.splityosis.nucleuscore.storage.LocalDatabaseConnectionManager;
+import dev.splityosis.nucleuscore.text.BroadcastService;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -32,11 +48,28 @@ public class Nucleus {
     private FileConfiguration settingsConfig;
     private File localDatabaseFile;
     private DatabaseConnectionManager databaseConnectionManager;
+    private final ConfigPersistenceService configPersistenceService;
+    private DatabaseExecutor databaseExecutor;
+    private PlayerSessionService playerSessionService;
+    private final BroadcastService broadcastService;
+    private final ListenerProfiler listenerProfiler;
+    private final CommandProfiler commandProfiler;
+    private final MetricsRegistry metricsRegistry;
+    private final MetricsExporter metricsExporter;
+    private final TimingWheel timingWheel;
 
 
     public Nucleus(JavaPlugin plugin, String LOG_PREFIX, File modulesFolder, File localDatabaseFile) {
         this.plugin = plugin;
         this.localDatabaseFile = localDatabaseFile;
+        configPersistenceService = new ConfigPersistenceService(this);
+        broadcastService = new BroadcastService(this);
+        listenerProfiler = new ListenerProfiler(this);
+        commandProfiler = new CommandProfiler();
+        metricsRegistry = new MetricsRegistry();
+        metricsRegistry.registerCollector(new NucleusMetrics(this));
+        metricsExporter = new MetricsExporter(this, metricsRegistry);
+        timingWheel = new TimingWheel(plugin);
         moduleLoader = new ModuleLoader(this, modulesFolder);
         this.LOG_PREFIX = LOG_PREFIX;
     }
@@ -52,6 +85,26 @@ public class Nucleus {
         }
 
         settingsConfig = YamlConfiguration.loadConfiguration(settingsFile);
+        moduleLoader.setParallelEnabling(settingsConfig.getBoolean("modules.parallel-enable", false));
+        moduleLoader.setShutdownTimeoutMillis(settingsConfig.getLong("modules.shutdown-timeout-millis", 5000));
+        moduleLoader.setPrepareTimeoutMillis(settingsConfig.getLong("modules.prepare-timeout-millis", 30000));
+        moduleLoader.setTickBudgetMillis(settingsConfig.getDouble("modules.tick-budget-millis", 5));
+        moduleLoader.setExecutorSettings(ExecutorSettings.fromConfig(settingsConfig.getConfigurationSection("modules.executor")));
+        initializeMetricsExport();
+    }
+
+    private void initializeMetricsExport(){
+        if (settingsConfig.getBoolean("metrics.file.enabled", false)) {
+            File file = new File(settingsFile.getAbsoluteFile().getParentFile(), settingsConfig.getString("metrics.file.path", "metrics/nucleus.prom"));
+            metricsExporter.startFileExport(file, Math.max(1, settingsConfig.getLong("metrics.file.interval-seconds", 60)), settingsConfig.getInt("metrics.file.max-files", 10));
+        }
+        if (settingsConfig.getBoolean("metrics.http.enabled", false)) {
+            try {
+                metricsExporter.startHttp(settingsConfig.getString("metrics.http.address", "127.0.0.1"), settingsConfig.getInt("metrics.http.port", 9464));
+            } catch (IOException e) {
+                log("&cFailed to start the metrics endpoint: " + e.getMessage());
+            }
+        }
     }
 
     public void initializeDatabase(){
@@ -63,9 +116,26 @@ public class Nucleus {
             String password = settingsConfig.getString("database.info.password");
 
             log("&7Connecting to database...");
-            databaseConnectionManager = new HikariDatabaseConnectionManager(this, databaseType, address, name, username, password);
+            DatabaseType type = DatabaseType.fromName(databaseType);
+            DatabasePoolSettings poolSettings = DatabasePoolSettings.fromConfig(settingsConfig.getConfigurationSection("database.pool"), type);
+            if (type.isLocal()) {
+                LocalDatabaseConnectionManager localDatabaseConnectionManager = new LocalDatabaseConnectionManager(this, type);
+                localDatabaseConnectionManager.setPoolSettings(poolSettings);
+                databaseConnectionManager = localDatabaseConnectionManager;
+            }
+            else {
+                HikariDatabaseConnectionManager hikariDatabaseConnectionManager = new HikariDatabaseConnectionManager(this, databaseType, address, name, username, password);
+                hikariDatabaseConnectionManager.setPoolSettings(poolSettings);
+                databaseConnectionManager = hikariDatabaseConnectionManager;
+            }
             databaseConnectionManager.setup();
+            databaseExecutor = new DatabaseExecutor(this, databaseConnectionManager.getMaximumPoolSize(), databaseConnectionManager.isSingleWriter(), settingsConfig.getInt("database.queue-capacity", 1000));
             log("&7Successfully connected to database!");
+
+            playerSessionService = new PlayerSessionService(this);
+            playerSessionService.setPreloadTimeoutMillis(settingsConfig.getLong("sessions.preload-timeout-millis", 5000));
+            playerSessionService.setPreloadFailedMessage(settingsConfig.getString("sessions.preload-failed-message", playerSessionService.getPreloadFailedMessage()));
+            playerSessionService.start(settingsConfig.getLong("sessions.save-interval-seconds", 300) * 20);
         } catch (UnsupportedDatabaseType e) {
             throw new RuntimeException(e);
         }
@@ -77,10 +147,27 @@ public class Nucleus {
 
         this.nucleusCommandBranch.addBranch(new ModulesCommandBranch(this, basePermission));
         this.nucleusCommandBranch.addBranch(commandsCommandBranch);
+        this.nucleusCommandBranch.addBranch(new DatabaseCommandBranch(this, basePermission));
+        this.nucleusCommandBranch.addBranch(new ProfileCommandBranch(this, basePermission));
 
+        commandProfiler.instrument("Nucleus", nucleusCommandBranch);
         this.nucleusCommandBranch.registerCommandBranch(plugin);
     }
 
+    /**
+     * Disables all modules and flushes everything Nucleus still has pending.
+     */
+    public void onDisable(){
+        moduleLoader.onDisable();
+        timingWheel.shutdown();
+        if (playerSessionService != null)
+            playerSessionService.shutdown();
+        if (databaseExecutor != null)
+            databaseExecutor.shutdown(moduleLoader.getShutdownTimeoutMillis());
+        configPersistenceService.shutdown(moduleLoader.getShutdownTimeoutMillis());
+        metricsExporter.shutdown();
+    }
+
     public ModuleLoader getModuleLoader() {
         return moduleLoader;
     }
@@ -117,6 +204,54 @@ public class Nucleus {
         return databaseConnectionManager;
     }
 
+    /**
+     * @return The executor asynchronous database operations run on, or null if the database wasn't initialized.
+     */
+    public DatabaseExecutor getDatabaseExecutor() {
+        return databaseExecutor;
+    }
+
+    /**
+     * @return The service keeping module data of online players, or null if the database wasn't initialized.
+     */
+    public PlayerSessionService getPlayerSessionService() {
+        return playerSessionService;
+    }
+
+    public BroadcastService getBroadcastService() {
+        return broadcastService;
+    }
+
+    public ListenerProfiler getListenerProfiler() {
+        return listenerProfiler;
+    }
+
+    public CommandProfiler getCommandProfiler() {
+        return commandProfiler;
+    }
+
+    /**
+     * @return The registry Nucleus and its modules publish their metrics to.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public MetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+
+    /**
+     * @return The timing wheel module timers run on, driven by a single tick task.
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    public ConfigPersistenceService getConfigPersistenceService() {
+        return configPersistenceService;
+    }
+
     protected InputStream getSettingsYmlInputStream() {
         return getClass().getClassLoader().getResourceAsStream("settings.yml");
     }
@@ -1,7 +1,6 @@
 package dev.splityosis.nucleuscore;
 
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -9,8 +8,7 @@ import org.bukkit.inventory.meta.ItemMeta;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NucleusUtil {
 
@@ -24,27 +22,86 @@ public class NucleusUtil {
         });
     }
 
+    /**
+     * Sends a message to every online player, it's colorized once for all of them.
+     */
     public static void broadcast(String message){
+        String colorized = colorize(message);
         for (Player onlinePlayer : Bukkit.getOnlinePlayers())
-            sendMessage(onlinePlayer, message);
+            onlinePlayer.sendMessage(colorized);
         //log(message);
     }
 
     public static void broadcast(List<String> message){
+        String[] colorized = colorize(message).toArray(new String[0]);
         for (Player onlinePlayer : Bukkit.getOnlinePlayers())
-            sendMessage(onlinePlayer, message);
+            onlinePlayer.sendMessage(colorized);
         //log(message);
     }
 
-    private static final Pattern HEX_PATTERN = Pattern.compile("&(#\\w{6})");
+    private static final char COLOR_CHAR = '\u00A7';
+    private static final String COLOR_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRrXx";
+    private static final int COLORIZE_CACHE_SIZE = 2048;
+    private static final int COLORIZE_CACHE_MAX_LENGTH = 256;
+    private static final ConcurrentHashMap<String, String> colorizeCache = new ConcurrentHashMap<>();
+
+    /**
+     * Translates '&' color codes and '&#RRGGBB' hex colors. Results of short strings are memoized, strings without
+     * any '&' are returned as is.
+     */
     public static String colorize(String str) {
-        Matcher matcher = HEX_PATTERN.matcher(net.md_5.bungee.api.ChatColor.translateAlternateColorCodes('&', str));
-        StringBuffer buffer = new StringBuffer();
+        if (str == null || str.indexOf('&') == -1)
+            return str;
+        if (str.length() > COLORIZE_CACHE_MAX_LENGTH)
+            return translateColors(str);
+
+        String colorized = colorizeCache.get(str);
+        if (colorized != null)
+            return colorized;
+        colorized = translateColors(str);
+        // Dynamic strings would grow the cache forever, it's simply dropped once it's full
+        if (colorizeCache.size() >= COLORIZE_CACHE_SIZE)
+            colorizeCache.clear();
+        colorizeCache.put(str, colorized);
+        return colorized;
+    }
 
-        while (matcher.find())
-            matcher.appendReplacement(buffer, net.md_5.bungee.api.ChatColor.of(matcher.group(1)).toString());
+    private static String translateColors(String str) {
+        int length = str.length();
+        StringBuilder builder = new StringBuilder(length + 16);
+        int i = 0;
+        while (i < length) {
+            char c = str.charAt(i);
+            if (c == '&' && i + 1 < length) {
+                char code = str.charAt(i + 1);
+                if (code == '#' && isHexColor(str, i + 2)) {
+                    // &#RRGGBB becomes §x§R§R§G§G§B§B
+                    builder.append(COLOR_CHAR).append('x');
+                    for (int j = i + 2; j < i + 8; j++)
+                        builder.append(COLOR_CHAR).append(Character.toLowerCase(str.charAt(j)));
+                    i += 8;
+                    continue;
+                }
+                if (COLOR_CODES.indexOf(code) != -1) {
+                    builder.append(COLOR_CHAR).append(Character.toLowerCase(code));
+                    i += 2;
+                    continue;
+                }
+            }
+            builder.append(c);
+            i++;
+        }
+        return builder.toString();
+    }
 
-        return ChatColor.translateAlternateColorCodes('&', matcher.appendTail(buffer).toString());
+    private static boolean isHexColor(String str, int start) {
+        if (start + 6 > str.length())
+            return false;
+        for (int i = start; i < start + 6; i++) {
+            if (Character.digit(str.charAt(i), 16) == -1)
+                return false;
+        }
+        return true;
     }
 
     public static List<String> colorize(List<String> lst){
@@ -65,6 +122,10 @@ public class NucleusUtil {
         return newList;
     }
 
+    /**
+     * Replaces text in a copy of the item's display name and lore. Items rendered repeatedly with several placeholders
+     * should use {@link dev.splityosis.nucleuscore.text.ItemTemplate} instead.
+     */
     public static ItemStack replace(ItemStack itemStack, String from, String to){
         ItemStack item = itemStack.clone();
         ItemMeta meta = item.getItemMeta();
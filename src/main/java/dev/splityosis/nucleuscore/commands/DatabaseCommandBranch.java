@@ -0,0 +1,43 @@
+package dev.splityosis.nucleuscore.commands;
+
+import com.octanepvp.splityosis.commandsystem.SYSCommand;
+import com.octanepvp.splityosis.commandsystem.SYSCommandBranch;
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.NucleusUtil;
+import dev.splityosis.nucleuscore.storage.DatabaseExecutor;
+import dev.splityosis.nucleuscore.storage.DatabasePoolMetrics;
+import dev.splityosis.nucleuscore.storage.LocalDatabaseConnectionManager;
+
+public class DatabaseCommandBranch extends SYSCommandBranch {
+
+    private Nucleus nucleus;
+
+    public DatabaseCommandBranch(Nucleus nucleus, String basePermission) {
+        super("Database", "DB");
+        this.nucleus = nucleus;
+        setPermission(basePermission + ".database");
+
+        addCommand(new SYSCommand("Pool").executes((commandSender, strings) -> {
+            if (nucleus.getDatabaseConnectionManager() == null) {
+                nucleus.sendPrefixedMessage(commandSender, "&cThe database isn't initialized.");
+                return;
+            }
+            DatabasePoolMetrics metrics = nucleus.getDatabaseConnectionManager().getPoolMetrics();
+            nucleus.sendPrefixedMessage(commandSender, "&e&lDatabase pool &e("+nucleus.getDatabaseConnectionManager().getDatabaseType().getJdbcName()+"):");
+            NucleusUtil.sendMessage(commandSender, "&eConnections: &b"+metrics.getActiveConnections()+" active&e, &b"+metrics.getIdleConnections()+" idle&e, &b"+metrics.getTotalConnections()+"/"+metrics.getMaxConnections()+" total");
+            NucleusUtil.sendMessage(commandSender, "&eWaiting for a connection: &b"+metrics.getPendingThreads());
+            NucleusUtil.sendMessage(commandSender, "&eWait time: &b"+String.format("%.2f", metrics.getAverageWaitMillis())+"ms avg&e, &b"+String.format("%.2f", metrics.getMaxWaitMillis())+"ms max");
+            NucleusUtil.sendMessage(commandSender, "&eAverage connection usage: &b"+String.format("%.2f", metrics.getAverageUsageMillis())+"ms");
+            NucleusUtil.sendMessage(commandSender, "&eConnections handed out: &b"+metrics.getAcquisitions()+"&e, timeouts: &b"+metrics.getTimeouts());
+
+            if (nucleus.getDatabaseConnectionManager() instanceof LocalDatabaseConnectionManager) {
+                DatabasePoolMetrics writeMetrics = ((LocalDatabaseConnectionManager) nucleus.getDatabaseConnectionManager()).getWritePoolMetrics();
+                NucleusUtil.sendMessage(commandSender, "&eWriter: &b"+writeMetrics.getPendingThreads()+" waiting&e, &b"+String.format("%.2f", writeMetrics.getAverageWaitMillis())+"ms avg wait&e, &b"+String.format("%.2f", writeMetrics.getMaxWaitMillis())+"ms max");
+            }
+
+            DatabaseExecutor executor = nucleus.getDatabaseExecutor();
+            if (executor != null)
+                NucleusUtil.sendMessage(commandSender, "&eAsync operations: &b"+executor.getActiveCount()+"/"+executor.getThreads()+" running&e, &b"+executor.getQueueSize()+" queued");
+        }));
+    }
+}
@@ -3,13 +3,21 @@ package dev.splityosis.nucleuscore.commands;
 import com.octanepvp.splityosis.commandsystem.SYSCommand;
 import com.octanepvp.splityosis.commandsystem.SYSCommandBranch;
 import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.module.LifecycleTimings;
 import dev.splityosis.nucleuscore.module.Module;
 import dev.splityosis.nucleuscore.NucleusUtil;
 import dev.splityosis.nucleuscore.commands.arguments.DisabledModuleArgument;
 import dev.splityosis.nucleuscore.commands.arguments.EnabledModuleArgument;
 import dev.splityosis.nucleuscore.commands.arguments.ModuleArgument;
+import dev.splityosis.nucleuscore.commands.arguments.ModuleJarArgument;
+import dev.splityosis.nucleuscore.module.ModuleClassLoader;
+import dev.splityosis.nucleuscore.scheduler.ModuleExecutor;
+import dev.splityosis.nucleuscore.scheduler.ModuleScheduler;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.util.Map;
+
 public class ModulesCommandBranch extends SYSCommandBranch {
 
     private Nucleus nucleus;
@@ -22,10 +30,91 @@ public class ModulesCommandBranch extends SYSCommandBranch {
         addCommand(new SYSCommand("List").executes((commandSender, strings) -> {
             for (Module enabledModule : nucleus.getModuleLoader().getEnabledModules())
                 NucleusUtil.sendMessage(commandSender, "&a"+enabledModule.getName());
-            for (Module disabledModule : nucleus.getModuleLoader().getDisabledModules())
-                NucleusUtil.sendMessage(commandSender, "&c"+disabledModule.getName());
+            for (Module disabledModule : nucleus.getModuleLoader().getDisabledModules()) {
+                if (nucleus.getModuleLoader().isModuleDormant(disabledModule))
+                    NucleusUtil.sendMessage(commandSender, "&e"+disabledModule.getName()+" &7(lazy)");
+                else
+                    NucleusUtil.sendMessage(commandSender, "&c"+disabledModule.getName());
+            }
+        }));
+
+        addCommand(new SYSCommand("Timings").executes((commandSender, strings) -> {
+            LifecycleTimings timings = nucleus.getModuleLoader().getLifecycleTimings();
+            if (timings.getStartupMillis() < 0) {
+                nucleus.sendPrefixedMessage(commandSender, "&cModules weren't initialized yet.");
+                return;
+            }
+            nucleus.sendPrefixedMessage(commandSender, "&e&lModule timings:");
+            NucleusUtil.sendMessage(commandSender, timings.getSummary(15));
+            for (String name : timings.getSlowestStartups()) {
+                double disable = timings.getMillis(name, LifecycleTimings.Operation.DISABLE);
+                double reload = timings.getMillis(name, LifecycleTimings.Operation.RELOAD);
+                if (disable >= 0 || reload >= 0)
+                    NucleusUtil.sendMessage(commandSender, " &7- &a"+name+" &7last disable &e"+(disable < 0 ? "-" : String.format("%.1fms", disable))+"&7, last reload &e"+(reload < 0 ? "-" : String.format("%.1fms", reload)));
+            }
+        }));
+
+        addCommand(new SYSCommand("Scheduler").executes((commandSender, strings) -> {
+            nucleus.sendPrefixedMessage(commandSender, "&e&lModule schedulers:");
+            boolean any = false;
+            for (Module module : nucleus.getModuleLoader().getEnabledModules()) {
+                ModuleScheduler scheduler = module.getSchedulerIfCreated();
+                if (scheduler == null || scheduler.getScheduledTaskCount() == 0 && scheduler.getWorkStepCount() == 0 && scheduler.getActiveTimerCount() == 0)
+                    continue;
+                any = true;
+                NucleusUtil.sendMessage(commandSender, " &7- &a"+module.getName()+" &7tasks &e"+scheduler.getActiveTaskCount()+" active&7/&e"+scheduler.getScheduledTaskCount()+" scheduled&7, timers &e"+scheduler.getActiveTimerCount()
+                        +"&7, task avg &e"+String.format("%.2fms", scheduler.getTaskTimings().getMeanMillis())+"&7, max &e"+String.format("%.2fms", scheduler.getTaskTimings().getMaxMillis()));
+                NucleusUtil.sendMessage(commandSender, "   &7work &e"+scheduler.getPendingWorkCount()+" pending&7/&e"+scheduler.getCompletedWorkCount()+" done"
+                        +"&7, per tick avg &e"+String.format("%.2fms", scheduler.getWorkTickTimings().getMeanMillis())+" &7of &e"+String.format("%.1fms", scheduler.getTickBudgetMillis())
+                        +"&7, over budget &e"+scheduler.getOverBudgetTickCount()+" &7ticks");
+            }
+            for (Module module : nucleus.getModuleLoader().getEnabledModules()) {
+                ModuleExecutor executor = module.getExecutorIfCreated();
+                if (executor == null || executor.isShutdown())
+                    continue;
+                any = true;
+                NucleusUtil.sendMessage(commandSender, " &7- &a"+module.getName()+" &7executor"+(executor.isVirtual() ? " &b(virtual)" : "")+" &e"+executor.getActiveCount()+"&7/&e"+executor.getMaxConcurrency()+" active"
+                        +"&7, &e"+executor.getQueueSize()+"&7/&e"+executor.getQueueCapacity()+" queued&7, &e"+executor.getCompletedCount()+" &7done, &c"+executor.getRejectedCount()+" &7rejected");
+            }
+            if (!any)
+                NucleusUtil.sendMessage(commandSender, "&7No module scheduled anything yet.");
+        }));
+
+        addCommand(new SYSCommand("Jars").executes((commandSender, strings) -> {
+            nucleus.sendPrefixedMessage(commandSender, "&e&lModule jars:");
+            for (ModuleClassLoader classLoader : nucleus.getModuleLoader().getModuleJars()) {
+                StringBuilder modules = new StringBuilder();
+                for (Module module : classLoader.getModules())
+                    modules.append(modules.length() == 0 ? "" : "&7, ").append(nucleus.getModuleLoader().isModuleEnabled(module) ? "&a" : "&c").append(module.getName());
+                NucleusUtil.sendMessage(commandSender, " &7- &e"+classLoader.getJarFile().getName()+" &7("+modules+"&7)");
+            }
+            for (Map.Entry<String, Long> entry : nucleus.getModuleLoader().getRetainedClassLoaders().entrySet()) {
+                long seconds = (System.currentTimeMillis() - entry.getValue()) / 1000;
+                NucleusUtil.sendMessage(commandSender, " &7- &c"+entry.getKey()+" &7unloaded "+seconds+"s ago, its class loader is still in memory");
+            }
         }));
 
+        addCommand(new SYSCommand("Swap")
+                .setArguments(new ModuleJarArgument(nucleus))
+                .executes((commandSender, strings) -> {
+                    File jarFile = new File(nucleus.getModuleLoader().getModulesFolder(), strings[0]);
+                    boolean success = nucleus.getModuleLoader().swapModuleJar(jarFile);
+                    if (success)
+                        nucleus.sendPrefixedMessage(commandSender, "&eSuccessfully swapped in &a&l" + jarFile.getName() + "&e.");
+                    else
+                        nucleus.sendPrefixedMessage(commandSender, "&cNo modules could be loaded from &c&l" + jarFile.getName() + "&c.");
+                }));
+
+        addCommand(new SYSCommand("Unload")
+                .setArguments(new ModuleJarArgument(nucleus))
+                .executes((commandSender, strings) -> {
+                    File jarFile = new File(nucleus.getModuleLoader().getModulesFolder(), strings[0]);
+                    if (nucleus.getModuleLoader().unloadModuleJar(jarFile))
+                        nucleus.sendPrefixedMessage(commandSender, "&eSuccessfully unloaded &a&l" + jarFile.getName() + "&e.");
+                    else
+                        nucleus.sendPrefixedMessage(commandSender, "&c&l" + jarFile.getName() + " &cisn't loaded.");
+                }));
+
         addCommand(new SYSCommand("Enable")
                 .setArguments(new DisabledModuleArgument(nucleus))
                 .executes((commandSender, strings) -> {
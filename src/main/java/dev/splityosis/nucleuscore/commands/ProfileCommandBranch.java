@@ -0,0 +1,71 @@
+package dev.splityosis.nucleuscore.commands;
+
+import com.octanepvp.splityosis.commandsystem.SYSCommand;
+import com.octanepvp.splityosis.commandsystem.SYSCommandBranch;
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.NucleusUtil;
+import dev.splityosis.nucleuscore.metrics.CommandTimings;
+import dev.splityosis.nucleuscore.metrics.HandlerTimings;
+import dev.splityosis.nucleuscore.metrics.LatencyHistogram;
+import dev.splityosis.nucleuscore.metrics.ListenerProfiler;
+
+import java.util.List;
+
+public class ProfileCommandBranch extends SYSCommandBranch {
+
+    private Nucleus nucleus;
+
+    public ProfileCommandBranch(Nucleus nucleus, String basePermission) {
+        super("Profile");
+        this.nucleus = nucleus;
+        setPermission(basePermission + ".profile");
+
+        addCommand(new SYSCommand("On").executes((commandSender, strings) -> {
+            nucleus.getListenerProfiler().setEnabled(true);
+            nucleus.sendPrefixedMessage(commandSender, "&eListener profiling &aenabled&e.");
+        }));
+
+        addCommand(new SYSCommand("Off").executes((commandSender, strings) -> {
+            nucleus.getListenerProfiler().setEnabled(false);
+            nucleus.sendPrefixedMessage(commandSender, "&eListener profiling &cdisabled&e.");
+        }));
+
+        addCommand(new SYSCommand("Reset").executes((commandSender, strings) -> {
+            nucleus.getListenerProfiler().reset();
+            nucleus.getCommandProfiler().reset();
+            nucleus.sendPrefixedMessage(commandSender, "&eListener and command timings reset.");
+        }));
+
+        addCommand(new SYSCommand("Commands").executes((commandSender, strings) -> {
+            List<CommandTimings> top = nucleus.getCommandProfiler().getTop(10);
+            nucleus.sendPrefixedMessage(commandSender, "&e&lTop commands:");
+            if (top.isEmpty()) {
+                NucleusUtil.sendMessage(commandSender, "&7Nothing recorded yet.");
+                return;
+            }
+            for (CommandTimings timings : top) {
+                LatencyHistogram executions = timings.getExecutions();
+                LatencyHistogram tabCompletions = timings.getTabCompletions();
+                NucleusUtil.sendMessage(commandSender, "&a"+timings.getModuleName()+" &b/"+timings.getCommandName()+(timings.getExceptions() == 0 ? "" : " &c"+timings.getExceptions()+" exceptions"));
+                NucleusUtil.sendMessage(commandSender, "  &7run: &e"+executions.getCount()+"&7x, avg &e"+String.format("%.3f", executions.getMeanMillis())+"ms&7, p99 &e"+String.format("%.3f", executions.getPercentileMillis(99))+"ms&7, max &e"+String.format("%.3f", executions.getMaxMillis())+"ms");
+                if (tabCompletions.getCount() != 0)
+                    NucleusUtil.sendMessage(commandSender, "  &7tab: &e"+tabCompletions.getCount()+"&7x, avg &e"+String.format("%.3f", tabCompletions.getMeanMillis())+"ms&7, p99 &e"+String.format("%.3f", tabCompletions.getPercentileMillis(99))+"ms&7, max &e"+String.format("%.3f", tabCompletions.getMaxMillis())+"ms");
+            }
+        }));
+
+        addCommand(new SYSCommand("Top").executes((commandSender, strings) -> {
+            ListenerProfiler profiler = nucleus.getListenerProfiler();
+            List<HandlerTimings> top = profiler.getTop(10);
+            nucleus.sendPrefixedMessage(commandSender, "&e&lTop event handlers &e(profiling "+(profiler.isEnabled() ? "&aon" : "&coff")+"&e):");
+            if (top.isEmpty()) {
+                NucleusUtil.sendMessage(commandSender, "&7Nothing recorded yet.");
+                return;
+            }
+            for (HandlerTimings timings : top) {
+                LatencyHistogram histogram = timings.getHistogram();
+                NucleusUtil.sendMessage(commandSender, "&a"+timings.getModuleName()+" &7"+timings.getEventName()+" &b"+timings.getHandlerName());
+                NucleusUtil.sendMessage(commandSender, "  &e"+histogram.getCount()+" calls&7, &e"+String.format("%.2f", histogram.getTotalMillis())+"ms total&7, avg &e"+String.format("%.3f", histogram.getMeanMillis())+"ms&7, p99 &e"+String.format("%.3f", histogram.getPercentileMillis(99))+"ms&7, max &e"+String.format("%.3f", histogram.getMaxMillis())+"ms");
+            }
+        }));
+    }
+}
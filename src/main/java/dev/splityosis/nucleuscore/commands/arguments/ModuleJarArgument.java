@@ -0,0 +1,41 @@
+package dev.splityosis.nucleuscore.commands.arguments;
+
+import com.octanepvp.splityosis.commandsystem.SYSArgument;
+import com.octanepvp.splityosis.commandsystem.SYSCommand;
+import dev.splityosis.nucleuscore.Nucleus;
+import org.bukkit.command.CommandSender;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ModuleJarArgument extends SYSArgument {
+    private Nucleus nucleus;
+
+    public ModuleJarArgument(Nucleus nucleus) {
+        this.nucleus = nucleus;
+    }
+
+    @Override
+    public boolean isValid(String s) {
+        File file = new File(nucleus.getModuleLoader().getModulesFolder(), s);
+        return s.toLowerCase().endsWith(".jar") && file.isFile() && file.getParentFile().equals(nucleus.getModuleLoader().getModulesFolder());
+    }
+
+    @Override
+    public List<String> getInvalidInputMessage(String s) {
+            return Arrays.asList(nucleus.getLOG_PREFIX() + " &cUnknown module jar '"+s+"'.");
+    }
+
+    @Override
+    public @NonNull List<String> tabComplete(CommandSender sender, SYSCommand command, String input) {
+        List<String> complete = new ArrayList<>();
+        File[] jars = nucleus.getModuleLoader().getModulesFolder().listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
+        if (jars != null)
+            for (File jar : jars)
+                complete.add(jar.getName());
+        return complete;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.splityosis.nucleuscore.exceptions;
+
+public class WriteBehindException extends Exception{
+
+    private final int failedWrites;
+
+    public WriteBehindException(String message, int failedWrites, Throwable cause) {
+        super(message, cause);
+        this.failedWrites = failedWrites;
+    }
+
+    /**
+     * @return Amount of queued writes that weren't written.
+     */
+    public int getFailedWrites() {
+        return failedWrites;
+    }
+}
@@ -0,0 +1,10 @@
+package dev.splityosis.nucleuscore.metrics;
+
+/**
+ * Writes samples that are only known at export time, such as one sample per loaded module.
+ */
+@FunctionalInterface
+public interface Collector {
+
+    void collect(PrometheusWriter writer);
+}
@@ -0,0 +1,157 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import com.octanepvp.splityosis.commandsystem.CommandExecutor;
+import com.octanepvp.splityosis.commandsystem.SYSArgument;
+import com.octanepvp.splityosis.commandsystem.SYSCommand;
+import com.octanepvp.splityosis.commandsystem.SYSCommandBranch;
+import org.bukkit.command.CommandSender;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures commands by wrapping their executors and arguments: invocations, latency and exceptions of executions and
+ * tab-completions, attributed to the module that registered them.
+ */
+public class CommandProfiler {
+
+    private final Map<String, CommandTimings> timings = new ConcurrentHashMap<>();
+
+    /**
+     * Instruments every command of a branch and its sub branches.
+     * @param owner Name of the module, or Nucleus, owning the branch.
+     * @param branch The branch.
+     */
+    public void instrument(String owner, SYSCommandBranch branch) {
+        instrument(owner, getName(branch.getNames()), branch);
+    }
+
+    private void instrument(String owner, String path, SYSCommandBranch branch) {
+        List<SYSCommand> commands = branch.getCommands();
+        if (commands != null) {
+            for (SYSCommand command : commands)
+                instrument(owner, path + " " + getName(command.getNames()), command);
+        }
+        List<SYSCommandBranch> branches = branch.getBranches();
+        if (branches != null) {
+            for (SYSCommandBranch subBranch : branches)
+                instrument(owner, path + " " + getName(subBranch.getNames()), subBranch);
+        }
+    }
+
+    /**
+     * Instruments a command.
+     * @param owner Name of the module, or Nucleus, owning the command.
+     * @param command The command.
+     */
+    public void instrument(String owner, SYSCommand command) {
+        instrument(owner, getName(command.getNames()), command);
+    }
+
+    private void instrument(String owner, String name, SYSCommand command) {
+        CommandTimings commandTimings = timings.computeIfAbsent(owner + "|" + name, key -> new CommandTimings(owner, name));
+
+        CommandExecutor executor = command.getExecutor();
+        if (executor != null && !(executor instanceof TimedExecutor))
+            command.executes(new TimedExecutor(executor, commandTimings));
+
+        SYSArgument[] arguments = command.getArguments();
+        if (arguments != null && arguments.length != 0) {
+            SYSArgument[] timedArguments = new SYSArgument[arguments.length];
+            for (int i = 0; i < arguments.length; i++)
+                timedArguments[i] = arguments[i] instanceof TimedArgument ? arguments[i] : new TimedArgument(arguments[i], commandTimings);
+            command.setArguments(timedArguments);
+        }
+    }
+
+    private static String getName(String[] names) {
+        return names == null || names.length == 0 ? "?" : names[0].toLowerCase();
+    }
+
+    /**
+     * @param count Maximum amount of commands to return.
+     * @return The commands with the highest total execution time, highest first.
+     */
+    public List<CommandTimings> getTop(int count) {
+        List<CommandTimings> sorted = new ArrayList<>();
+        for (CommandTimings commandTimings : timings.values()) {
+            if (commandTimings.getExecutions().getCount() != 0 || commandTimings.getTabCompletions().getCount() != 0)
+                sorted.add(commandTimings);
+        }
+        sorted.sort((a, b) -> Long.compare(
+                b.getExecutions().getTotalNanos() + b.getTabCompletions().getTotalNanos(),
+                a.getExecutions().getTotalNanos() + a.getTabCompletions().getTotalNanos()));
+        return sorted.size() > count ? sorted.subList(0, count) : sorted;
+    }
+
+    /**
+     * @return The timings of every instrumented command.
+     */
+    public Collection<CommandTimings> getTimings() {
+        return Collections.unmodifiableCollection(timings.values());
+    }
+
+    /**
+     * Clears every recorded timing.
+     */
+    public void reset() {
+        for (CommandTimings commandTimings : timings.values())
+            commandTimings.reset();
+    }
+
+    private static class TimedExecutor implements CommandExecutor {
+        private final CommandExecutor executor;
+        private final CommandTimings timings;
+
+        private TimedExecutor(CommandExecutor executor, CommandTimings timings) {
+            this.executor = executor;
+            this.timings = timings;
+        }
+
+        @Override
+        public void execute(CommandSender sender, String[] args) {
+            long start = System.nanoTime();
+            try {
+                executor.execute(sender, args);
+            } catch (RuntimeException | Error e) {
+                timings.recordException();
+                throw e;
+            } finally {
+                timings.getExecutions().record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class TimedArgument extends SYSArgument {
+        private final SYSArgument argument;
+        private final CommandTimings timings;
+
+        private TimedArgument(SYSArgument argument, CommandTimings timings) {
+            this.argument = argument;
+            this.timings = timings;
+        }
+
+        @Override
+        public boolean isValid(String s) {
+            return argument.isValid(s);
+        }
+
+        @Override
+        public List<String> getInvalidInputMessage(String s) {
+            return argument.getInvalidInputMessage(s);
+        }
+
+        @Override
+        public List<String> tabComplete(CommandSender sender, SYSCommand command, String input) {
+            long start = System.nanoTime();
+            try {
+                return argument.tabComplete(sender, command, input);
+            } catch (RuntimeException | Error e) {
+                timings.recordException();
+                throw e;
+            } finally {
+                timings.getTabCompletions().record(System.nanoTime() - start);
+            }
+        }
+    }
+}
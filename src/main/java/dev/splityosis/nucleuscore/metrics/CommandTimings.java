@@ -0,0 +1,56 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of a single command of a module, for both execution and tab-completion.
+ */
+public class CommandTimings {
+
+    private final String moduleName;
+    private final String commandName;
+    private final LatencyHistogram executions = new LatencyHistogram();
+    private final LatencyHistogram tabCompletions = new LatencyHistogram();
+    private final LongAdder exceptions = new LongAdder();
+
+    public CommandTimings(String moduleName, String commandName) {
+        this.moduleName = moduleName;
+        this.commandName = commandName;
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    /**
+     * @return The command's full name, including the branches it's under.
+     */
+    public String getCommandName() {
+        return commandName;
+    }
+
+    public LatencyHistogram getExecutions() {
+        return executions;
+    }
+
+    public LatencyHistogram getTabCompletions() {
+        return tabCompletions;
+    }
+
+    /**
+     * @return Amount of executions and tab-completions that threw.
+     */
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    void recordException() {
+        exceptions.increment();
+    }
+
+    void reset() {
+        executions.reset();
+        tabCompletions.reset();
+        exceptions.reset();
+    }
+}
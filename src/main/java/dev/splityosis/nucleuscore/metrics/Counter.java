@@ -0,0 +1,34 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that only goes up, such as the amount of processed requests.
+ */
+public class Counter extends Metric {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help, String[] labels) {
+        super(name, help, labels);
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("Counters can't decrease");
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    @Override
+    protected void write(PrometheusWriter writer) {
+        writer.counter(getName(), getHelp(), get(), labels());
+    }
+}
@@ -0,0 +1,26 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value read when the metrics are exported, such as a queue's size. The supplier is called off the main thread, so
+ * it must be thread-safe.
+ */
+public class Gauge extends Metric {
+
+    private final DoubleSupplier supplier;
+
+    Gauge(String name, String help, DoubleSupplier supplier, String[] labels) {
+        super(name, help, labels);
+        this.supplier = supplier;
+    }
+
+    public double get() {
+        return supplier.getAsDouble();
+    }
+
+    @Override
+    protected void write(PrometheusWriter writer) {
+        writer.gauge(getName(), getHelp(), get(), labels());
+    }
+}
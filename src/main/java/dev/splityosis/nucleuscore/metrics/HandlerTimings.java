@@ -0,0 +1,37 @@
+package dev.splityosis.nucleuscore.metrics;
+
+/**
+ * Timings of a single event handler of a module.
+ */
+public class HandlerTimings {
+
+    private final String moduleName;
+    private final String eventName;
+    private final String handlerName;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    public HandlerTimings(String moduleName, String eventName, String handlerName) {
+        this.moduleName = moduleName;
+        this.eventName = eventName;
+        this.handlerName = handlerName;
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return The handler as ListenerClass#method.
+     */
+    public String getHandlerName() {
+        return handlerName;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
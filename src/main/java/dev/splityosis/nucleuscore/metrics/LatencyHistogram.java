@@ -0,0 +1,114 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram. Every power of two is split into 4 buckets, so percentiles are accurate to within 25%
+ * while recording stays a handful of atomic increments.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + 61 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a latency.
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+            max = maxNanos.get();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getTotalMillis() {
+        return getTotalNanos() / 1_000_000D;
+    }
+
+    public double getMeanMillis() {
+        long recorded = getCount();
+        return recorded == 0 ? 0 : getTotalNanos() / 1_000_000D / recorded;
+    }
+
+    public double getMaxMillis() {
+        return getMaxNanos() / 1_000_000D;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket the percentile falls in, in milliseconds.
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] != 0)
+                return Math.min(bucketUpperBound(i), getMaxNanos()) / 1_000_000D;
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Clears everything recorded so far. Values recorded concurrently may partially survive the reset.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            buckets.set(i, 0);
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    private static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index + 1 < SUB_BUCKETS)
+            return index + 1;
+        if (index + 1 >= BUCKETS)
+            return Long.MAX_VALUE;
+        int next = index + 1 - SUB_BUCKETS;
+        int exponent = next / SUB_BUCKETS + 2;
+        int subBucket = next % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - 2);
+    }
+}
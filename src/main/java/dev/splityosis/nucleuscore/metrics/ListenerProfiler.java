@@ -0,0 +1,162 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.RegisteredListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registers module listeners with executors that can time every handler call, attributed to the module, event and
+ * handler. Profiling is switched on and off at runtime, while it's off a handler call costs a single volatile read.
+ */
+public class ListenerProfiler {
+
+    private final Nucleus nucleus;
+    private final Map<String, HandlerTimings> timings = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Event>, HandlerList> handlerLists = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+
+    public ListenerProfiler(Nucleus nucleus) {
+        this.nucleus = nucleus;
+    }
+
+    /**
+     * Registers the event handlers of a listener under a module, the same way Bukkit's plugin manager would.
+     * @param module The module owning the listener.
+     * @param listener The listener.
+     */
+    public void registerEvents(Module module, Listener listener) {
+        for (Method method : getHandlerMethods(listener.getClass())) {
+            EventHandler eventHandler = method.getAnnotation(EventHandler.class);
+            Class<?>[] parameters = method.getParameterTypes();
+            if (parameters.length != 1 || !Event.class.isAssignableFrom(parameters[0])) {
+                nucleus.log("&cModule '"+module.getName()+"' has an invalid event handler "+listener.getClass().getName()+"#"+method.getName());
+                continue;
+            }
+            Class<? extends Event> eventClass = parameters[0].asSubclass(Event.class);
+            method.setAccessible(true);
+
+            String handlerName = listener.getClass().getSimpleName() + "#" + method.getName();
+            HandlerTimings handlerTimings = timings.computeIfAbsent(module.getName() + "|" + eventClass.getName() + "|" + handlerName,
+                    key -> new HandlerTimings(module.getName(), eventClass.getSimpleName(), handlerName));
+
+            EventExecutor executor = (registeredListener, event) -> {
+                if (!eventClass.isInstance(event))
+                    return;
+                if (!enabled) {
+                    invoke(method, registeredListener, event);
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    invoke(method, registeredListener, event);
+                } finally {
+                    handlerTimings.getHistogram().record(System.nanoTime() - start);
+                }
+            };
+            getHandlerList(eventClass).register(new RegisteredListener(listener, executor, eventHandler.priority(), nucleus.getPlugin(), eventHandler.ignoreCancelled()));
+        }
+    }
+
+    private static void invoke(Method method, Listener listener, Event event) throws EventException {
+        try {
+            method.invoke(listener, event);
+        } catch (InvocationTargetException e) {
+            throw new EventException(e.getCause());
+        } catch (Throwable throwable) {
+            throw new EventException(throwable);
+        }
+    }
+
+    private static Set<Method> getHandlerMethods(Class<?> listenerClass) {
+        Set<Method> methods = new LinkedHashSet<>();
+        for (Method method : listenerClass.getMethods()) {
+            if (method.isAnnotationPresent(EventHandler.class) && !method.isBridge() && !method.isSynthetic())
+                methods.add(method);
+        }
+        for (Method method : listenerClass.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(EventHandler.class) && !method.isBridge() && !method.isSynthetic())
+                methods.add(method);
+        }
+        return methods;
+    }
+
+    /**
+     * Finds the handler list of an event the way Bukkit does, through the static getHandlerList method of the event
+     * class or its closest superclass declaring one.
+     */
+    public HandlerList getHandlerList(Class<? extends Event> eventClass) {
+        return handlerLists.computeIfAbsent(eventClass, clazz -> {
+            Class<?> current = clazz;
+            while (current != null && Event.class.isAssignableFrom(current)) {
+                try {
+                    Method method = current.getDeclaredMethod("getHandlerList");
+                    method.setAccessible(true);
+                    return (HandlerList) method.invoke(null);
+                } catch (NoSuchMethodException e) {
+                    current = current.getSuperclass();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            throw new IllegalArgumentException("Unable to find the handler list of event " + clazz.getName() + ", static getHandlerList method required");
+        });
+    }
+
+    /**
+     * Drops the cached handler lists of events defined by a class loader, so an unloaded module jar can be collected.
+     */
+    public void forgetClassLoader(ClassLoader classLoader) {
+        handlerLists.keySet().removeIf(eventClass -> eventClass.getClassLoader() == classLoader);
+    }
+
+    /**
+     * @param count Maximum amount of handlers to return.
+     * @return The handlers with the highest total time, highest first.
+     */
+    public List<HandlerTimings> getTop(int count) {
+        List<HandlerTimings> sorted = new ArrayList<>();
+        for (HandlerTimings handlerTimings : timings.values()) {
+            if (handlerTimings.getHistogram().getCount() != 0)
+                sorted.add(handlerTimings);
+        }
+        sorted.sort((a, b) -> Long.compare(b.getHistogram().getTotalNanos(), a.getHistogram().getTotalNanos()));
+        return sorted.size() > count ? sorted.subList(0, count) : sorted;
+    }
+
+    /**
+     * @return The timings of every handler registered through the profiler.
+     */
+    public Collection<HandlerTimings> getTimings() {
+        return Collections.unmodifiableCollection(timings.values());
+    }
+
+    /**
+     * Clears every recorded timing.
+     */
+    public void reset() {
+        for (HandlerTimings handlerTimings : timings.values())
+            handlerTimings.getHistogram().reset();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches profiling on or off, takes effect on the next handler call.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
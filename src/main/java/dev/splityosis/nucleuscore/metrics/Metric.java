@@ -0,0 +1,52 @@
+package dev.splityosis.nucleuscore.metrics;
+
+/**
+ * A metric in the {@link MetricsRegistry}, identified by its name and labels.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final String help;
+    private final String[] labels;
+
+    protected Metric(String name, String help, String[] labels) {
+        this.name = name;
+        this.help = help;
+        this.labels = labels;
+    }
+
+    /**
+     * Writes the metric's samples.
+     */
+    protected abstract void write(PrometheusWriter writer);
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * @return The metric's labels as name value pairs.
+     */
+    public String[] getLabels() {
+        return labels.clone();
+    }
+
+    protected String[] labels() {
+        return labels;
+    }
+
+    /**
+     * @return Whether the metric has a label with the given value.
+     */
+    public boolean hasLabel(String labelName, String value) {
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (labels[i].equals(labelName) && labels[i + 1].equals(value))
+                return true;
+        }
+        return false;
+    }
+}
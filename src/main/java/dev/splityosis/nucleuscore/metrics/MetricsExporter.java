@@ -0,0 +1,153 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.splityosis.nucleuscore.Nucleus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports a {@link MetricsRegistry} in the Prometheus text format, periodically to a rotating file and on demand
+ * through an embedded HTTP endpoint. Everything runs on the exporter's own daemon threads.
+ */
+public class MetricsExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Nucleus nucleus;
+    private final MetricsRegistry registry;
+    private ScheduledExecutorService fileScheduler;
+    private ExecutorService httpExecutor;
+    private HttpServer httpServer;
+
+    public MetricsExporter(Nucleus nucleus, MetricsRegistry registry) {
+        this.nucleus = nucleus;
+        this.registry = registry;
+    }
+
+    /**
+     * Writes the metrics to a file periodically. The previous exports are kept as file.1, file.2 and so on, the oldest
+     * is deleted once there are more than maxFiles.
+     * @param file The file the latest metrics are written to.
+     * @param intervalSeconds How often the metrics are written.
+     * @param maxFiles Amount of previous exports to keep.
+     */
+    public synchronized void startFileExport(File file, long intervalSeconds, int maxFiles) {
+        if (fileScheduler != null)
+            throw new IllegalStateException("The file export is already running");
+        fileScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nucleus-Metrics-File");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fileScheduler.scheduleAtFixedRate(() -> {
+            try {
+                writeFile(file, maxFiles);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        nucleus.log("&7Exporting metrics to &e" + file.getPath() + " &7every &e" + intervalSeconds + "s");
+    }
+
+    /**
+     * Rotates the previous exports and writes the current metrics to the file.
+     */
+    public void writeFile(File file, int maxFiles) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), registry.scrape().getBytes(StandardCharsets.UTF_8));
+
+        if (maxFiles > 0 && file.exists()) {
+            Files.deleteIfExists(new File(file.getPath() + "." + maxFiles).toPath());
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                File rotated = new File(file.getPath() + "." + i);
+                if (rotated.exists())
+                    Files.move(rotated.toPath(), new File(file.getPath() + "." + (i + 1)).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(file.toPath(), new File(file.getPath() + ".1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Starts serving the metrics at /metrics.
+     * @param address The address to bind to, keep it on localhost unless the port is firewalled.
+     * @param port The port to listen on.
+     */
+    public synchronized void startHttp(String address, int port) throws IOException {
+        if (httpServer != null)
+            throw new IllegalStateException("The HTTP endpoint is already running");
+        HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/metrics", exchange -> {
+            try {
+                if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        });
+        httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nucleus-Metrics-HTTP");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(httpExecutor);
+        server.start();
+        httpServer = server;
+        nucleus.log("&7Serving metrics on &ehttp://" + address + ":" + port + "/metrics");
+    }
+
+    /**
+     * Stops both exports.
+     */
+    public synchronized void shutdown() {
+        if (fileScheduler != null) {
+            fileScheduler.shutdownNow();
+            fileScheduler = null;
+        }
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (httpExecutor != null) {
+            httpExecutor.shutdownNow();
+            httpExecutor = null;
+        }
+    }
+
+    public synchronized boolean isFileExportRunning() {
+        return fileScheduler != null;
+    }
+
+    public synchronized boolean isHttpRunning() {
+        return httpServer != null;
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,118 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Lock-free registry of counters, gauges and timers, exported in the Prometheus text format. Every metric name is
+ * prefixed with "nucleus_", metrics registered through {@link #forModule(String)} carry a "module" label.
+ * Registering a metric that already exists returns the existing one.
+ */
+public class MetricsRegistry {
+
+    public static final String PREFIX = "nucleus_";
+
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param labels Label name value pairs.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return register(name, labels, Counter.class, (metricName, metricLabels) -> new Counter(metricName, help, metricLabels));
+    }
+
+    /**
+     * @param supplier Reads the value, called off the main thread so it must be thread-safe.
+     * @param labels Label name value pairs.
+     */
+    public Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        return register(name, labels, Gauge.class, (metricName, metricLabels) -> new Gauge(metricName, help, supplier, metricLabels));
+    }
+
+    /**
+     * @param labels Label name value pairs.
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return register(name, labels, Timer.class, (metricName, metricLabels) -> new Timer(metricName, help, metricLabels));
+    }
+
+    private <T extends Metric> T register(String name, String[] labels, Class<T> type, MetricFactory<T> factory) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be name value pairs");
+        String metricName = PREFIX + PrometheusWriter.sanitizeName(name);
+        Metric metric = metrics.computeIfAbsent(key(metricName, labels), key -> factory.create(metricName, labels.clone()));
+        if (!type.isInstance(metric))
+            throw new IllegalArgumentException("Metric '" + metricName + "' is already registered as a " + metric.getClass().getSimpleName());
+        return type.cast(metric);
+    }
+
+    private static String key(String name, String[] labels) {
+        StringBuilder key = new StringBuilder(name);
+        for (String label : labels)
+            key.append('\u0000').append(label);
+        return key.toString();
+    }
+
+    /**
+     * @return A view of this registry that labels every metric with the module's name.
+     */
+    public ModuleMetrics forModule(String moduleName) {
+        return new ModuleMetrics(this, moduleName);
+    }
+
+    public void unregister(Metric metric) {
+        metrics.remove(key(metric.getName(), metric.labels()), metric);
+    }
+
+    /**
+     * Removes every metric with the given label value.
+     */
+    public void unregisterAll(String labelName, String value) {
+        metrics.values().removeIf(metric -> metric.hasLabel(labelName, value));
+    }
+
+    /**
+     * Adds a collector that writes samples every time the metrics are exported.
+     */
+    public void registerCollector(Collector collector) {
+        collectors.add(collector);
+    }
+
+    public void unregisterCollector(Collector collector) {
+        collectors.remove(collector);
+    }
+
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * @return Every metric and collector sample in the Prometheus text format.
+     */
+    public String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        for (Metric metric : metrics.values()) {
+            try {
+                metric.write(writer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        for (Collector collector : collectors) {
+            try {
+                collector.collect(writer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return writer.render();
+    }
+
+    @FunctionalInterface
+    private interface MetricFactory<T extends Metric> {
+        T create(String name, String[] labels);
+    }
+}
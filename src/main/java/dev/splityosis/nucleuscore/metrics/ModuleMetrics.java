@@ -0,0 +1,61 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A module's view of the {@link MetricsRegistry}, every metric registered through it is labeled with the module's name
+ * and removed when the module is disabled.
+ */
+public class ModuleMetrics {
+
+    public static final String MODULE_LABEL = "module";
+
+    private final MetricsRegistry registry;
+    private final String moduleName;
+
+    ModuleMetrics(MetricsRegistry registry, String moduleName) {
+        this.registry = registry;
+        this.moduleName = moduleName;
+    }
+
+    /**
+     * @param labels Additional label name value pairs.
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return registry.counter(name, help, withModule(labels));
+    }
+
+    /**
+     * @param supplier Reads the value, called off the main thread so it must be thread-safe.
+     * @param labels Additional label name value pairs.
+     */
+    public Gauge gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        return registry.gauge(name, help, supplier, withModule(labels));
+    }
+
+    /**
+     * @param labels Additional label name value pairs.
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return registry.timer(name, help, withModule(labels));
+    }
+
+    /**
+     * Removes every metric of the module.
+     */
+    public void unregisterAll() {
+        registry.unregisterAll(MODULE_LABEL, moduleName);
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    private String[] withModule(String[] labels) {
+        String[] all = new String[labels.length + 2];
+        all[0] = MODULE_LABEL;
+        all[1] = moduleName;
+        System.arraycopy(labels, 0, all, 2, labels.length);
+        return all;
+    }
+}
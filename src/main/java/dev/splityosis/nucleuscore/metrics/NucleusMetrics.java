@@ -0,0 +1,159 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.module.LifecycleTimings;
+import dev.splityosis.nucleuscore.module.Module;
+import dev.splityosis.nucleuscore.module.ModuleLoader;
+import dev.splityosis.nucleuscore.scheduler.ModuleExecutor;
+import dev.splityosis.nucleuscore.scheduler.ModuleScheduler;
+import dev.splityosis.nucleuscore.storage.DatabaseConnectionManager;
+import dev.splityosis.nucleuscore.storage.DatabaseExecutor;
+import dev.splityosis.nucleuscore.storage.DatabasePoolMetrics;
+import dev.splityosis.nucleuscore.storage.LocalDatabaseConnectionManager;
+import dev.splityosis.nucleuscore.storage.ModuleCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the metrics of Nucleus itself: modules, lifecycle timings, the database, module caches and schedulers and
+ * the listener and command profilers.
+ */
+public class NucleusMetrics implements Collector {
+
+    private final Nucleus nucleus;
+
+    public NucleusMetrics(Nucleus nucleus) {
+        this.nucleus = nucleus;
+    }
+
+    @Override
+    public void collect(PrometheusWriter writer) {
+        collectModules(writer);
+        collectDatabase(writer);
+        collectProfilers(writer);
+        writer.gauge(MetricsRegistry.PREFIX + "timing_wheel_timers", "Timers waiting on the timing wheel", nucleus.getTimingWheel().size());
+        writer.counter(MetricsRegistry.PREFIX + "timing_wheel_expirations", "Timing wheel timers that ran", nucleus.getTimingWheel().getExpirationCount());
+        writer.gauge(MetricsRegistry.PREFIX + "broadcasts_pending", "Broadcasts waiting for the end of the tick", nucleus.getBroadcastService().getPendingCount());
+    }
+
+    private void collectModules(PrometheusWriter writer) {
+        ModuleLoader moduleLoader = nucleus.getModuleLoader();
+        List<Module> modules = new ArrayList<>(moduleLoader.getLoadedModules());
+        int enabled = 0;
+        for (Module module : modules) {
+            boolean moduleEnabled = moduleLoader.isModuleEnabled(module);
+            if (moduleEnabled)
+                enabled++;
+            writer.gauge(MetricsRegistry.PREFIX + "module_enabled", "Whether the module is enabled", moduleEnabled ? 1 : 0, "module", module.getName());
+            collectCaches(writer, module);
+            if (moduleEnabled)
+                collectScheduler(writer, module);
+        }
+        writer.gauge(MetricsRegistry.PREFIX + "modules_loaded", "Amount of loaded modules", modules.size());
+        writer.gauge(MetricsRegistry.PREFIX + "modules_enabled", "Amount of enabled modules", enabled);
+        writer.gauge(MetricsRegistry.PREFIX + "modules_dormant", "Amount of lazy modules waiting for their first use", moduleLoader.getLazyActivation().getDormantModules().size());
+
+        LifecycleTimings timings = moduleLoader.getLifecycleTimings();
+        long startupMillis = timings.getStartupMillis();
+        if (startupMillis >= 0)
+            writer.gauge(MetricsRegistry.PREFIX + "startup_seconds", "Time it took to start all modules", startupMillis / 1000D);
+        for (Map.Entry<String, Long> entry : timings.getPhaseMillis().entrySet())
+            writer.gauge(MetricsRegistry.PREFIX + "startup_phase_seconds", "Time spent in each startup phase", entry.getValue() / 1000D, "phase", entry.getKey());
+        for (Module module : modules) {
+            for (LifecycleTimings.Operation operation : LifecycleTimings.Operation.values()) {
+                double millis = timings.getMillis(module.getName(), operation);
+                if (millis >= 0)
+                    writer.gauge(MetricsRegistry.PREFIX + "module_lifecycle_seconds", "Latest duration of each module lifecycle operation", millis / 1000D,
+                            "module", module.getName(), "operation", operation.getKey());
+            }
+        }
+    }
+
+    private static void collectCaches(PrometheusWriter writer, Module module) {
+        List<ModuleCache<?, ?>> caches = module.getCaches();
+        for (int i = 0; i < caches.size(); i++) {
+            ModuleCache<?, ?> cache = caches.get(i);
+            String[] labels = {"module", module.getName(), "cache", String.valueOf(i)};
+            writer.gauge(MetricsRegistry.PREFIX + "cache_size", "Amount of cached entries", cache.size(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "cache_hits", "Cache lookups that found a value", cache.getHitCount(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "cache_misses", "Cache lookups that had to load a value", cache.getMissCount(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "cache_load_failures", "Cache loads that failed", cache.getLoadFailureCount(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "cache_evictions", "Entries evicted for size or expiry", cache.getEvictionCount(), labels);
+            if (cache.getWriteBehindQueue() != null)
+                writer.gauge(MetricsRegistry.PREFIX + "cache_write_behind_pending", "Writes waiting to be flushed", cache.getWriteBehindQueue().getPendingCount(), labels);
+        }
+    }
+
+    private static void collectScheduler(PrometheusWriter writer, Module module) {
+        ModuleScheduler scheduler = module.getSchedulerIfCreated();
+        if (scheduler == null)
+            return;
+        String[] labels = {"module", module.getName()};
+        writer.gauge(MetricsRegistry.PREFIX + "scheduler_tasks_active", "Scheduled or running module tasks", scheduler.getActiveTaskCount(), labels);
+        writer.counter(MetricsRegistry.PREFIX + "scheduler_tasks_scheduled", "Module tasks scheduled", scheduler.getScheduledTaskCount(), labels);
+        writer.gauge(MetricsRegistry.PREFIX + "scheduler_timers_active", "Module timers waiting on the timing wheel", scheduler.getActiveTimerCount(), labels);
+        writer.gauge(MetricsRegistry.PREFIX + "scheduler_work_pending", "Queued jobs that aren't done yet", scheduler.getPendingWorkCount(), labels);
+        writer.counter(MetricsRegistry.PREFIX + "scheduler_work_completed", "Queued jobs completed", scheduler.getCompletedWorkCount(), labels);
+        writer.counter(MetricsRegistry.PREFIX + "scheduler_over_budget_ticks", "Ticks queued work ran past the tick budget", scheduler.getOverBudgetTickCount(), labels);
+        writer.gauge(MetricsRegistry.PREFIX + "scheduler_tick_budget_seconds", "Time queued work may take per tick", scheduler.getTickBudgetMillis() / 1000D, labels);
+
+        ModuleExecutor executor = module.getExecutorIfCreated();
+        if (executor != null && !executor.isShutdown()) {
+            writer.gauge(MetricsRegistry.PREFIX + "executor_queued", "Module executor tasks waiting for their turn", executor.getQueueSize(), labels);
+            writer.gauge(MetricsRegistry.PREFIX + "executor_active", "Module executor tasks running", executor.getActiveCount(), labels);
+            writer.gauge(MetricsRegistry.PREFIX + "executor_max_concurrency", "Module executor tasks allowed to run at once", executor.getMaxConcurrency(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "executor_completed", "Module executor tasks completed", executor.getCompletedCount(), labels);
+            writer.counter(MetricsRegistry.PREFIX + "executor_rejected", "Module executor tasks rejected", executor.getRejectedCount(), labels);
+        }
+        if (scheduler.getTaskTimings().getCount() != 0)
+            writer.summary(MetricsRegistry.PREFIX + "scheduler_task_seconds", "Main thread task durations", scheduler.getTaskTimings(), labels);
+        if (scheduler.getWorkTickTimings().getCount() != 0)
+            writer.summary(MetricsRegistry.PREFIX + "scheduler_work_tick_seconds", "Time spent on queued work per tick", scheduler.getWorkTickTimings(), labels);
+    }
+
+    private void collectDatabase(PrometheusWriter writer) {
+        DatabaseConnectionManager connectionManager = nucleus.getDatabaseConnectionManager();
+        if (connectionManager != null) {
+            collectPool(writer, connectionManager.getPoolMetrics(), "main");
+            if (connectionManager instanceof LocalDatabaseConnectionManager)
+                collectPool(writer, ((LocalDatabaseConnectionManager) connectionManager).getWritePoolMetrics(), "write");
+        }
+
+        DatabaseExecutor executor = nucleus.getDatabaseExecutor();
+        if (executor != null) {
+            writer.gauge(MetricsRegistry.PREFIX + "db_executor_queued", "Database operations waiting for a thread", executor.getQueueSize());
+            writer.gauge(MetricsRegistry.PREFIX + "db_executor_active", "Database operations running", executor.getActiveCount());
+        }
+    }
+
+    private static void collectPool(PrometheusWriter writer, DatabasePoolMetrics metrics, String pool) {
+        if (metrics == null)
+            return;
+        writer.gauge(MetricsRegistry.PREFIX + "db_pool_connections_active", "Connections in use", metrics.getActiveConnections(), "pool", pool);
+        writer.gauge(MetricsRegistry.PREFIX + "db_pool_connections_idle", "Idle connections", metrics.getIdleConnections(), "pool", pool);
+        writer.gauge(MetricsRegistry.PREFIX + "db_pool_connections_max", "Maximum amount of connections", metrics.getMaxConnections(), "pool", pool);
+        writer.gauge(MetricsRegistry.PREFIX + "db_pool_pending_threads", "Threads waiting for a connection", metrics.getPendingThreads(), "pool", pool);
+        writer.gauge(MetricsRegistry.PREFIX + "db_pool_wait_max_seconds", "Longest wait for a connection", metrics.getMaxWaitMillis() / 1000D, "pool", pool);
+        writer.counter(MetricsRegistry.PREFIX + "db_pool_acquisitions", "Connections handed out", metrics.getAcquisitions(), "pool", pool);
+        writer.counter(MetricsRegistry.PREFIX + "db_pool_timeouts", "Connection requests that timed out", metrics.getTimeouts(), "pool", pool);
+    }
+
+    private void collectProfilers(PrometheusWriter writer) {
+        for (HandlerTimings timings : nucleus.getListenerProfiler().getTimings()) {
+            if (timings.getHistogram().getCount() != 0)
+                writer.summary(MetricsRegistry.PREFIX + "event_handler_seconds", "Event handler durations, recorded while profiling is on", timings.getHistogram(),
+                        "module", timings.getModuleName(), "event", timings.getEventName(), "handler", timings.getHandlerName());
+        }
+        for (CommandTimings timings : nucleus.getCommandProfiler().getTimings()) {
+            String[] labels = {"module", timings.getModuleName(), "command", timings.getCommandName()};
+            if (timings.getExecutions().getCount() != 0)
+                writer.summary(MetricsRegistry.PREFIX + "command_seconds", "Command execution durations", timings.getExecutions(), labels);
+            if (timings.getTabCompletions().getCount() != 0)
+                writer.summary(MetricsRegistry.PREFIX + "command_tab_complete_seconds", "Tab completion durations", timings.getTabCompletions(), labels);
+            if (timings.getExceptions() != 0)
+                writer.counter(MetricsRegistry.PREFIX + "command_exceptions", "Commands that threw an exception", timings.getExceptions(), labels);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package dev.splityosis.nucleuscore.metrics;
+
+import java.util.*;
+
+/**
+ * Collects samples and renders them in the Prometheus text exposition format. Samples of the same metric are grouped
+ * under a single HELP and TYPE header no matter the order they were written in.
+ */
+public class PrometheusWriter {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Map<String, Family> families = new TreeMap<>();
+
+    /**
+     * Writes a counter sample.
+     * @param labels Label name value pairs.
+     */
+    public void counter(String name, String help, double value, String... labels) {
+        family(name, help, "counter").sample(name + "_total", labels, null, value);
+    }
+
+    /**
+     * Writes a gauge sample.
+     * @param labels Label name value pairs.
+     */
+    public void gauge(String name, String help, double value, String... labels) {
+        family(name, help, "gauge").sample(name, labels, null, value);
+    }
+
+    /**
+     * Writes a histogram as a summary in seconds, with its count, sum and a few quantiles.
+     * @param labels Label name value pairs.
+     */
+    public void summary(String name, String help, LatencyHistogram histogram, String... labels) {
+        Family family = family(name, help, "summary");
+        for (double quantile : QUANTILES)
+            family.sample(name, labels, String.valueOf(quantile), histogram.getPercentileMillis(quantile * 100) / 1000D);
+        family.sample(name + "_sum", labels, null, histogram.getTotalNanos() / 1_000_000_000D);
+        family.sample(name + "_count", labels, null, histogram.getCount());
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException("Metric '" + name + "' is already written as a " + family.type);
+        return family;
+    }
+
+    /**
+     * @return The samples written so far in the Prometheus text format.
+     */
+    public String render() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            if (family.help != null && !family.help.isEmpty())
+                builder.append("# HELP ").append(entry.getKey()).append(' ').append(escapeHelp(family.help)).append('\n');
+            builder.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            builder.append(family.samples);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Turns any string into a valid metric or label name.
+     */
+    public static String sanitizeName(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || (i > 0 && c >= '0' && c <= '9');
+            builder.append(valid ? c : '_');
+        }
+        return builder.length() == 0 ? "_" : builder.toString();
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value))
+            return "NaN";
+        if (Double.isInfinite(value))
+            return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static class Family {
+        private final String help;
+        private final String type;
+        private final StringBuilder samples = new StringBuilder();
+
+        private Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+
+        private void sample(String name, String[] labels, String quantile, double value) {
+            samples.append(name);
+            if (labels.length > 1 || quantile != null) {
+                samples.append('{');
+                boolean first = true;
+                for (int i = 0; i + 1 < labels.length; i += 2) {
+                    if (!first)
+                        samples.append(',');
+                    samples.append(sanitizeName(labels[i])).append("=\"").append(escapeLabel(String.valueOf(labels[i + 1]))).append('"');
+                    first = false;
+                }
+                if (quantile != null)
+                    samples.append(first ? "" : ",").append("quantile=\"").append(quantile).append('"');
+                samples.append('}');
+            }
+            samples.append(' ').append(formatValue(value)).append('\n');
+        }
+    }
+}
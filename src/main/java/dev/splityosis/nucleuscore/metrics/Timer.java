@@ -0,0 +1,42 @@
+package dev.splityosis.nucleuscore.metrics;
+
+/**
+ * Measures durations into a {@link LatencyHistogram}, exported as a summary with quantiles.
+ */
+public class Timer extends Metric {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(String name, String help, String[] labels) {
+        super(name, help, labels);
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    /**
+     * Runs the task and records how long it took.
+     */
+    public void time(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    protected void write(PrometheusWriter writer) {
+        writer.summary(getName(), getHelp(), histogram, labels());
+    }
+}
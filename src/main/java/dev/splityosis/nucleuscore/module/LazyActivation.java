@@ -0,0 +1,256 @@
+package dev.splityosis.nucleuscore.module;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.plugin.RegisteredListener;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps lazy modules dormant until they're used. A dormant module only costs a lookup of its trigger command names
+ * and a listener per trigger event, the module is enabled when one of them fires. Lazy modules with an idle timeout
+ * go back to being dormant when they weren't used for that long and no enabled module requires them.
+ */
+public class LazyActivation implements Listener {
+
+    private static final long IDLE_CHECK_PERIOD_TICKS = 200;
+
+    private final Nucleus nucleus;
+    private final ModuleLoader moduleLoader;
+    private final Map<String, Module> triggerCommands = new ConcurrentHashMap<>();
+    private final Map<Module, List<TriggerListener>> triggerListeners = new HashMap<>();
+    private final Set<Module> dormant = ConcurrentHashMap.newKeySet();
+    private boolean started;
+    private BukkitTask idleTask;
+
+    LazyActivation(Nucleus nucleus, ModuleLoader moduleLoader) {
+        this.nucleus = nucleus;
+        this.moduleLoader = moduleLoader;
+    }
+
+    /**
+     * Registers the module's triggers and leaves it disabled until one of them fires.
+     */
+    void makeDormant(Module module) {
+        start();
+        registerTriggers(module);
+        dormant.add(module);
+        nucleus.log("&7Module "+module.getName()+" is lazy, it will be enabled on first use.");
+    }
+
+    /**
+     * Enables a dormant module.
+     * @return Whether the module is enabled.
+     */
+    boolean activate(Module module) {
+        if (!dormant.contains(module))
+            return moduleLoader.isModuleEnabled(module);
+        nucleus.log("&7Enabling lazy module "+module.getName()+" on first use...");
+        boolean success = moduleLoader.enableModule(module);
+        if (!success)
+            forget(module);
+        return success;
+    }
+
+    /**
+     * Called when a module is enabled. A lazy module isn't dormant anymore, but its triggers keep marking it as used
+     * so it can go back to being dormant once idle.
+     */
+    void wake(Module module) {
+        if (!module.getSignature().lazy())
+            return;
+        start();
+        registerTriggers(module);
+        dormant.remove(module);
+        module.markUsed();
+    }
+
+    /**
+     * Unregisters the module's triggers, the module isn't lazy anymore until it's made dormant again.
+     */
+    void forget(Module module) {
+        dormant.remove(module);
+        triggerCommands.values().removeIf(triggerModule -> triggerModule == module);
+        List<TriggerListener> listeners;
+        synchronized (triggerListeners) {
+            listeners = triggerListeners.remove(module);
+        }
+        if (listeners != null)
+            for (TriggerListener listener : listeners)
+                listener.handlerList.unregister(listener.registeredListener);
+    }
+
+    public boolean isDormant(Module module) {
+        return dormant.contains(module);
+    }
+
+    /**
+     * @return The dormant modules.
+     */
+    public Set<Module> getDormantModules() {
+        return Collections.unmodifiableSet(dormant);
+    }
+
+    private void registerTriggers(Module module) {
+        Signature signature = module.getSignature();
+        for (String command : signature.triggerCommands())
+            triggerCommands.put(command.toLowerCase(), module);
+
+        synchronized (triggerListeners) {
+            if (triggerListeners.containsKey(module))
+                return;
+            List<TriggerListener> listeners = new ArrayList<>();
+            Listener stub = new Listener() {};
+            for (Class<? extends Event> eventClass : signature.triggerEvents()) {
+                HandlerList handlerList;
+                try {
+                    handlerList = nucleus.getListenerProfiler().getHandlerList(eventClass);
+                } catch (IllegalArgumentException e) {
+                    nucleus.log("&cModule '"+module.getName()+"' has an invalid trigger event "+eventClass.getName());
+                    continue;
+                }
+                RegisteredListener registeredListener = new RegisteredListener(stub, (listener, event) -> {
+                    if (eventClass.isInstance(event))
+                        onTriggerEvent(module, event);
+                }, EventPriority.LOWEST, nucleus.getPlugin(), false);
+                handlerList.register(registeredListener);
+                listeners.add(new TriggerListener(handlerList, registeredListener));
+            }
+            triggerListeners.put(module, listeners);
+        }
+    }
+
+    private void onTriggerEvent(Module module, Event event) {
+        if (!dormant.contains(module)) {
+            module.markUsed();
+            return;
+        }
+        if (event.isAsynchronous() || !Bukkit.isPrimaryThread()) {
+            // Modules are enabled on the main thread, this event comes too early for the module
+            Bukkit.getScheduler().runTask(nucleus.getPlugin(), () -> activate(module));
+            return;
+        }
+        if (!activate(module))
+            return;
+
+        // The event's handlers were baked before the module registered its own. Only the module's LOWEST handlers
+        // would have run by now, the higher priorities already ran for other plugins and get the next firing instead
+        for (RegisteredListener registeredListener : event.getHandlers().getRegisteredListeners()) {
+            if (registeredListener.getPriority() != EventPriority.LOWEST || !module.getModuleListeners().contains(registeredListener.getListener()))
+                continue;
+            try {
+                registeredListener.callEvent(event);
+            } catch (EventException e) {
+                nucleus.log("&cModule '"+module.getName()+"' failed to handle "+event.getEventName());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        onCommand(event.getMessage());
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onServerCommand(ServerCommandEvent event) {
+        onCommand(event.getCommand());
+    }
+
+    /**
+     * Enables a dormant module before the command is looked up, so the module's real command handles it.
+     */
+    private void onCommand(String commandLine) {
+        if (triggerCommands.isEmpty())
+            return;
+        String label = commandLine.startsWith("/") ? commandLine.substring(1) : commandLine;
+        int space = label.indexOf(' ');
+        if (space >= 0)
+            label = label.substring(0, space);
+        label = label.substring(label.indexOf(':') + 1).toLowerCase();
+
+        Module module = triggerCommands.get(label);
+        if (module == null)
+            return;
+        if (dormant.contains(module))
+            activate(module);
+        else
+            module.markUsed();
+    }
+
+    private void start() {
+        if (started || !nucleus.getPlugin().isEnabled())
+            return;
+        started = true;
+        Bukkit.getPluginManager().registerEvents(this, nucleus.getPlugin());
+        idleTask = Bukkit.getScheduler().runTaskTimer(nucleus.getPlugin(), this::deactivateIdle, IDLE_CHECK_PERIOD_TICKS, IDLE_CHECK_PERIOD_TICKS);
+    }
+
+    /**
+     * Disables lazy modules that weren't used within their idle timeout and makes them dormant again.
+     */
+    private void deactivateIdle() {
+        long now = System.currentTimeMillis();
+        List<Module> lazyModules;
+        synchronized (triggerListeners) {
+            lazyModules = new ArrayList<>(triggerListeners.keySet());
+        }
+        for (Module module : lazyModules) {
+            long idleTimeoutSeconds = module.getSignature().idleTimeoutSeconds();
+            if (idleTimeoutSeconds <= 0 || dormant.contains(module) || !moduleLoader.isModuleEnabled(module))
+                continue;
+            if (now - module.getLastUsedMillis() < idleTimeoutSeconds * 1000 || isRequiredByEnabledModule(module))
+                continue;
+            nucleus.log("&7Lazy module "+module.getName()+" wasn't used for "+idleTimeoutSeconds+"s, disabling it until it's used again.");
+            if (moduleLoader.disableModule(module))
+                makeDormant(module);
+        }
+    }
+
+    private boolean isRequiredByEnabledModule(Module module) {
+        ModuleGraph graph = moduleLoader.getModuleGraph();
+        for (Module enabledModule : moduleLoader.getEnabledModules()) {
+            if (graph != null && graph.getRequiredModules(enabledModule).contains(module))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Unregisters every trigger, called when Nucleus is disabled.
+     */
+    void shutdown() {
+        List<Module> lazyModules;
+        synchronized (triggerListeners) {
+            lazyModules = new ArrayList<>(triggerListeners.keySet());
+        }
+        for (Module module : lazyModules)
+            forget(module);
+        if (idleTask != null)
+            idleTask.cancel();
+        idleTask = null;
+        if (started)
+            HandlerList.unregisterAll(this);
+        started = false;
+    }
+
+    private static class TriggerListener {
+        private final HandlerList handlerList;
+        private final RegisteredListener registeredListener;
+
+        private TriggerListener(HandlerList handlerList, RegisteredListener registeredListener) {
+            this.handlerList = handlerList;
+            this.registeredListener = registeredListener;
+        }
+    }
+}
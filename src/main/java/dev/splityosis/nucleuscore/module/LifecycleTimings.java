@@ -0,0 +1,194 @@
+package dev.splityosis.nucleuscore.module;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the {@link ModuleLoader}'s time goes: startup phases (scanning, loading, resolving, enabling) and the latest
+ * duration of every lifecycle operation of every module.
+ */
+public class LifecycleTimings {
+
+    public static final String PHASE_SCAN = "scan";
+    public static final String PHASE_LOAD = "load";
+    public static final String PHASE_RESOLVE = "resolve";
+    public static final String PHASE_ENABLE = "enable";
+
+    private final Map<String, Long> phaseNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Map<Operation, Long>> moduleNanos = new ConcurrentHashMap<>();
+    private volatile long startupNanos = -1;
+    private volatile long startupCompletedAt = -1;
+
+    /**
+     * Adds time to a startup phase, phases that run several times (such as scanning several jars) add up.
+     */
+    void addPhase(String phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Records the latest duration of a module's lifecycle operation.
+     */
+    void record(Module module, Operation operation, long nanos) {
+        Map<Operation, Long> operations = moduleNanos.computeIfAbsent(module.getName(), name -> Collections.synchronizedMap(new EnumMap<>(Operation.class)));
+        operations.put(operation, nanos);
+    }
+
+    void completeStartup() {
+        long total = 0;
+        synchronized (phaseNanos) {
+            for (long nanos : phaseNanos.values())
+                total += nanos;
+        }
+        startupNanos = total;
+        startupCompletedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return Total startup time in milliseconds, or -1 if the modules weren't initialized yet.
+     */
+    public long getStartupMillis() {
+        return startupNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(startupNanos);
+    }
+
+    /**
+     * @return The time spent in every startup phase in milliseconds, in the order the phases first ran.
+     */
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        synchronized (phaseNanos) {
+            for (Map.Entry<String, Long> entry : phaseNanos.entrySet())
+                millis.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+        }
+        return millis;
+    }
+
+    /**
+     * @return The latest duration of the operation in milliseconds, or -1 if the module never went through it.
+     */
+    public double getMillis(String moduleName, Operation operation) {
+        Map<Operation, Long> operations = moduleNanos.get(moduleName);
+        Long nanos = operations == null ? null : operations.get(operation);
+        return nanos == null ? -1 : nanos / 1_000_000D;
+    }
+
+    /**
+     * @return Names of modules sorted by the time they took to start (load, prepare and enable), slowest first.
+     */
+    public List<String> getSlowestStartups() {
+        List<String> names = new ArrayList<>(moduleNanos.keySet());
+        names.sort((a, b) -> Long.compare(getStartupNanos(b), getStartupNanos(a)));
+        return names;
+    }
+
+    private long getStartupNanos(String moduleName) {
+        Map<Operation, Long> operations = moduleNanos.get(moduleName);
+        if (operations == null)
+            return 0;
+        long total = 0;
+        for (Operation operation : new Operation[]{Operation.LOAD, Operation.PREPARE, Operation.ENABLE}) {
+            Long nanos = operations.get(operation);
+            if (nanos != null)
+                total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return Sorted console lines summarizing the startup.
+     */
+    public List<String> getSummary(int maxModules) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder phases = new StringBuilder();
+        for (Map.Entry<String, Long> entry : getPhaseMillis().entrySet()) {
+            if (phases.length() != 0)
+                phases.append("&7, ");
+            phases.append("&7").append(entry.getKey()).append(" &e").append(entry.getValue()).append("ms");
+        }
+        lines.add("&7Modules started in &e"+getStartupMillis()+"ms &7("+phases+"&7)");
+
+        List<String> slowest = getSlowestStartups();
+        for (int i = 0; i < slowest.size() && i < maxModules; i++) {
+            String name = slowest.get(i);
+            lines.add(" &7- &a"+name+" &e"+format(getStartupNanos(name) / 1_000_000D)+"ms &7(load "+format(getMillis(name, Operation.LOAD))
+                    +", prepare "+format(getMillis(name, Operation.PREPARE))+", enable "+format(getMillis(name, Operation.ENABLE))+")");
+        }
+        return lines;
+    }
+
+    private static String format(double millis) {
+        return millis < 0 ? "-" : String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    /**
+     * Writes the timings as JSON, so startups can be compared across deployments.
+     */
+    public void writeJson(File file) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"completedAt\": ").append(startupCompletedAt);
+        json.append(",\n  \"startupMillis\": ").append(getStartupMillis());
+        json.append(",\n  \"phases\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : getPhaseMillis().entrySet()) {
+            json.append(first ? "\n" : ",\n").append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+            first = false;
+        }
+        json.append(first ? "}" : "\n  }");
+
+        json.append(",\n  \"modules\": [");
+        first = true;
+        for (String name : getSlowestStartups()) {
+            json.append(first ? "\n" : ",\n").append("    {\"name\": ").append(quote(name));
+            for (Operation operation : Operation.values()) {
+                double millis = getMillis(name, operation);
+                if (millis >= 0)
+                    json.append(", \"").append(operation.getKey()).append("Millis\": ").append(String.format(Locale.ROOT, "%.3f", millis));
+            }
+            json.append("}");
+            first = false;
+        }
+        json.append(first ? "]" : "\n  ]").append("\n}\n");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+        Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    public enum Operation {
+        LOAD("load"),
+        PREPARE("prepare"),
+        ENABLE("enable"),
+        DISABLE("disable"),
+        RELOAD("reload");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+}
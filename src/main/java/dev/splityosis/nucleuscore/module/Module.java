@@ -3,17 +3,30 @@ package dev.splityosis.nucleuscore.module;
 import com.octanepvp.splityosis.commandsystem.SYSCommand;
 import com.octanepvp.splityosis.commandsystem.SYSCommandBranch;
 import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.metrics.ModuleMetrics;
+import dev.splityosis.nucleuscore.scheduler.ModuleExecutor;
+import dev.splityosis.nucleuscore.scheduler.ModuleScheduler;
+import dev.splityosis.nucleuscore.session.PlayerSessionService;
+import dev.splityosis.nucleuscore.session.SessionData;
+import dev.splityosis.nucleuscore.session.SessionDataHandler;
+import dev.splityosis.nucleuscore.storage.DatabaseExecutor;
+import dev.splityosis.nucleuscore.storage.ModuleCache;
+import dev.splityosis.nucleuscore.storage.ModuleDatabase;
+import dev.splityosis.nucleuscore.text.MessageTemplates;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 
 import java.io.File;
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public abstract class Module {
 
@@ -29,9 +42,28 @@ public abstract class Module {
     protected File configFile;
     protected FileConfiguration config;
     protected boolean isEnabled = false;
+    private ModuleDatabase database;
+    private final List<ModuleCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+    private final List<SessionData<?>> sessionData = new CopyOnWriteArrayList<>();
+    private MessageTemplates messages;
+    private ModuleMetrics metrics;
+    private volatile ModuleScheduler scheduler;
+    private ModuleExecutor executor;
+    private volatile long lastUsedMillis;
 
     protected Module() {}
 
+    /**
+     * Called before the module is enabled to start heavy work that doesn't touch the Bukkit API, such as loading data
+     * or warming caches. {@link #onEnable()} runs on the main thread once the returned future completes, so the work
+     * must never wait on the main thread.
+     * @param executor Executor to run the preparation work on.
+     * @return A future that completes once the module is prepared.
+     */
+    public CompletableFuture<Void> onPrepareAsync(Executor executor){
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Called when the module is enabled.
      */
@@ -41,18 +73,29 @@ public abstract class Module {
      * Called when the module is disabled.
      */
     public abstract void onDisable();
+
+    /**
+     * Called after {@link #onDisable()} to flush pending work, such as saving data, off the main thread. Flushes of
+     * modules that don't depend on each other run concurrently on shutdown, and each module gets a deadline after
+     * which the loader stops waiting for it.
+     * @param executor Executor to run the flush work on.
+     * @return A future that completes once the module's work is flushed.
+     */
+    public CompletableFuture<Void> onFlushAsync(Executor executor){
+        return CompletableFuture.completedFuture(null);
+    }
     /**
      * Called when the module is reloaded.
      */
     public abstract void onReload();
 
     /**
-     * Registers module's events.
+     * Registers module's events. Handlers are timed while profiling is enabled through '/nucleus profile'.
      * @param listeners Instances of listener classes.
      */
     public final void registerEvents(Listener... listeners){
         for (Listener listener : listeners) {
-            getNucleus().getPlugin().getServer().getPluginManager().registerEvents(listener, getNucleus().getPlugin());
+            getNucleus().getListenerProfiler().registerEvents(this, listener);
             this.moduleListeners.add(listener);
         }
     }
@@ -89,6 +132,7 @@ public abstract class Module {
     public final void registerCommands(SYSCommand... commands){
         for (SYSCommand command : commands) {
             //command.unregisterFromCommandMap();
+            getNucleus().getCommandProfiler().instrument(getName(), command);
             command.registerCommand(getNucleus().getPlugin());
             nucleus.getCommandsCommandBranch().addCommand(command);
             moduleCommands.add(command);
@@ -113,6 +157,7 @@ public abstract class Module {
      */
     public final void registerCommandBranch(SYSCommandBranch... commandBranch){
         for (SYSCommandBranch command : commandBranch) {
+            getNucleus().getCommandProfiler().instrument(getName(), command);
             command.registerCommandBranch(getNucleus().getPlugin());
             nucleus.getCommandsCommandBranch().addBranch(command);
             moduleCommandBranches.remove(command);
@@ -169,6 +214,98 @@ public abstract class Module {
         return getNucleus().getDatabaseConnectionManager().getConnection();
     }
 
+    /**
+     * Gets the module's asynchronous database access. Operations still pending when the module is disabled are cancelled.
+     * @return The module's ModuleDatabase.
+     */
+    public ModuleDatabase getDatabase() {
+        if (database == null) {
+            DatabaseExecutor executor = getNucleus().getDatabaseExecutor();
+            if (executor == null)
+                throw new IllegalStateException("The database hasn't been initialized");
+            database = new ModuleDatabase(this, getNucleus().getDatabaseConnectionManager(), executor);
+        }
+        return database;
+    }
+
+    /**
+     * Cancels the module's pending database operations, if it ever used any. This method is automatically called on disable.
+     */
+    public void cancelDatabaseOperations(){
+        if (database != null)
+            database.cancelAll();
+    }
+
+    /**
+     * Drains the module's write-behind queues, if it ever used any. This method is automatically called on disable.
+     * @return A future that completes once every queued write is written.
+     */
+    public CompletableFuture<Void> drainDatabaseWrites(){
+        if (database == null)
+            return CompletableFuture.completedFuture(null);
+        return database.drainWriteBehindQueues();
+    }
+
+    /**
+     * Creates a read-through cache owned by this module, backed by the module's database. It is cleared on disable.
+     * @param loader Loads values that aren't cached.
+     * @return The cache, configure it with its chained setters.
+     */
+    public <K, V> ModuleCache<K, V> createCache(ModuleCache.CacheLoader<K, V> loader){
+        ModuleCache<K, V> cache = new ModuleCache<>(getDatabase(), loader);
+        caches.add(cache);
+        return cache;
+    }
+
+    /**
+     * @return An unmodifiable list of all caches created by this module.
+     */
+    public List<ModuleCache<?, ?>> getCaches() {
+        return Collections.unmodifiableList(caches);
+    }
+
+    /**
+     * Clears and forgets all caches created by this module. This method is automatically called on disable.
+     */
+    public void clearCaches(){
+        for (ModuleCache<?, ?> cache : caches)
+            cache.invalidateAll();
+        caches.clear();
+    }
+
+    /**
+     * Registers data of online players that is loaded while they log in and kept for their session.
+     * @param handler Loads and saves the data.
+     * @return The session data, changed data is saved in batches and when the module is disabled.
+     */
+    public <T> SessionData<T> registerSessionData(SessionDataHandler<T> handler){
+        PlayerSessionService sessionService = getNucleus().getPlayerSessionService();
+        if (sessionService == null)
+            throw new IllegalStateException("The database hasn't been initialized");
+        SessionData<T> data = sessionService.register(this, handler);
+        sessionData.add(data);
+        return data;
+    }
+
+    /**
+     * @return An unmodifiable list of all session data registered under this module.
+     */
+    public List<SessionData<?>> getSessionData() {
+        return Collections.unmodifiableList(sessionData);
+    }
+
+    /**
+     * Saves and unregisters all session data registered under this module. This method is automatically called on disable.
+     * @return A future that completes once the data is saved.
+     */
+    public CompletableFuture<Void> unregisterAllSessionData(){
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (SessionData<?> data : sessionData)
+            saves.add(getNucleus().getPlayerSessionService().unregister(data));
+        sessionData.clear();
+        return CompletableFuture.allOf(saves.toArray(new CompletableFuture[0]));
+    }
+
     public Signature getSignature() {
         return signature;
     }
@@ -201,13 +338,120 @@ public abstract class Module {
         return config;
     }
 
+    /**
+     * Marks the module's config as dirty. It is serialized at most once per tick and written off the main thread,
+     * repeated saves are coalesced.
+     */
     public void saveConfig(){
-        try {
-            config.save(configFile);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        getNucleus().getConfigPersistenceService().markDirty(configFile, config);
     }
+
+    /**
+     * Queues the module's config to be written now if it has unsaved changes.
+     * @return A future that completes once the config is written.
+     */
+    public CompletableFuture<Void> flushConfig(){
+        return getNucleus().getConfigPersistenceService().flush(configFile);
+    }
+
+    /**
+     * Gets the module's messages, declared under the 'messages' section of its config. They are recompiled after the
+     * module is reloaded.
+     * @return The module's MessageTemplates.
+     */
+    public MessageTemplates getMessages() {
+        if (messages == null)
+            messages = new MessageTemplates(this);
+        return messages;
+    }
+
+    /**
+     * Gets the module's metrics, every metric registered through it is labeled with the module's name and exported
+     * with the rest of Nucleus' metrics.
+     * @return The module's ModuleMetrics.
+     */
+    public ModuleMetrics getMetrics() {
+        if (metrics == null)
+            metrics = getNucleus().getMetricsRegistry().forModule(getName());
+        return metrics;
+    }
+
+    /**
+     * Removes all metrics registered by this module. This method is automatically called on disable.
+     */
+    public void unregisterAllMetrics(){
+        getNucleus().getMetricsRegistry().unregisterAll(ModuleMetrics.MODULE_LABEL, getName());
+    }
+
+    /**
+     * Gets the module's scheduler. Its tasks are cancelled when the module is disabled, and its queued work runs
+     * within the module's tick budget, either the module config's "tick-budget-millis" or the loader-wide default.
+     * @return The module's ModuleScheduler.
+     */
+    public ModuleScheduler getScheduler() {
+        if (scheduler == null)
+            scheduler = new ModuleScheduler(this, getNucleus().getPlugin(), moduleLoader.getTickBudgetMillis(this));
+        return scheduler;
+    }
+
+    /**
+     * @return The module's scheduler, or null if the module never used it.
+     */
+    public ModuleScheduler getSchedulerIfCreated() {
+        return scheduler;
+    }
+
+    /**
+     * Cancels all tasks, timers and queued work of the module's scheduler and clears its cooldowns. This method is
+     * automatically called on disable.
+     */
+    public void cancelAllTasks(){
+        if (scheduler != null)
+            scheduler.cancelAll();
+    }
+
+    /**
+     * Marks the module as used, postponing the idle timeout of a lazy module. Trigger commands and events mark it
+     * automatically, lazy modules used through other entry points should call this from them.
+     */
+    public void markUsed(){
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    public long getLastUsedMillis() {
+        return lastUsedMillis;
+    }
+
+    /**
+     * Gets the module's executor for work that shouldn't run on the main thread. It is bounded, runs tasks on virtual
+     * threads on Java 21 and newer, and is shut down when the module is disabled, a new one is created if the module
+     * is enabled again.
+     * @return The module's ModuleExecutor.
+     */
+    public ModuleExecutor getExecutor() {
+        if (executor == null || executor.isShutdown())
+            executor = new ModuleExecutor("Nucleus-" + getName(), moduleLoader.getExecutorSettings());
+        return executor;
+    }
+
+    /**
+     * Shuts down the module's executor, letting submitted tasks finish within the module's shutdown timeout. This
+     * method is automatically called on disable.
+     * @return A future that completes once the executor terminated.
+     */
+    public CompletableFuture<Void> shutdownExecutor(){
+        if (executor == null || executor.isShutdown())
+            return CompletableFuture.completedFuture(null);
+        return executor.shutdown(moduleLoader.getShutdownTimeoutMillis(this), moduleLoader.getLifecycleExecutor());
+    }
+
+    /**
+     * @return The module's executor, or null if the module never used it.
+     */
+    public ModuleExecutor getExecutorIfCreated() {
+        return executor;
+    }
+
     public File getFolder() {
         return folder;
     }
@@ -0,0 +1,125 @@
+package dev.splityosis.nucleuscore.module;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class loader of a single module jar from the modules folder. Classes are looked up in the plugin first, so Nucleus
+ * and the server API are shared, then in the jar and finally in the other module jars, so modules can use the
+ * classes of modules they require. Dropping every reference to the loader lets the jar's classes be unloaded.
+ */
+public class ModuleClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ModuleLoader moduleLoader;
+    private final File jarFile;
+    private final File loadedFile;
+    private final List<Module> modules = new ArrayList<>();
+    private final Set<ModuleClassLoader> linkedClassLoaders = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param jarFile The jar in the modules folder.
+     * @param loadedFile The copy of the jar the classes are read from, so the jar itself can be replaced.
+     */
+    ModuleClassLoader(ModuleLoader moduleLoader, File jarFile, File loadedFile, ClassLoader parent) throws MalformedURLException {
+        super(new URL[]{loadedFile.toURI().toURL()}, parent);
+        this.moduleLoader = moduleLoader;
+        this.jarFile = jarFile;
+        this.loadedFile = loadedFile;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        try {
+            return super.loadClass(name, resolve);
+        } catch (ClassNotFoundException e) {
+            Class<?> clazz = moduleLoader.findModuleJarClass(name, this);
+            if (clazz == null)
+                throw e;
+            return clazz;
+        }
+    }
+
+    /**
+     * Finds a class in this jar only, without asking the parent or other module jars.
+     * @return The class, or null if the jar doesn't contain it.
+     */
+    Class<?> findJarClass(String name) {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz != null)
+                return clazz;
+            try {
+                return findClass(name);
+            } catch (ClassNotFoundException | LinkageError e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Records that another module jar loaded a class of this jar.
+     */
+    void addLinkedClassLoader(ModuleClassLoader classLoader) {
+        linkedClassLoaders.add(classLoader);
+    }
+
+    /**
+     * @return The class loaders of the module jars that loaded classes of this jar, they keep using this jar's classes
+     * until they're reloaded themselves.
+     */
+    Set<ModuleClassLoader> getLinkedClassLoaders() {
+        return Collections.unmodifiableSet(linkedClassLoaders);
+    }
+
+    void addModule(Module module) {
+        modules.add(module);
+    }
+
+    /**
+     * Closes the jar and deletes the copy it was loaded from.
+     */
+    void unload() {
+        modules.clear();
+        linkedClassLoaders.clear();
+        try {
+            close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (!loadedFile.delete())
+            loadedFile.deleteOnExit();
+    }
+
+    /**
+     * @return The jar in the modules folder.
+     */
+    public File getJarFile() {
+        return jarFile;
+    }
+
+    /**
+     * @return The copy of the jar the classes are read from.
+     */
+    File getLoadedFile() {
+        return loadedFile;
+    }
+
+    /**
+     * @return The modules loaded from the jar.
+     */
+    public List<Module> getModules() {
+        return Collections.unmodifiableList(modules);
+    }
+}
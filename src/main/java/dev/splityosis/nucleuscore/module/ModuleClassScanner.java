@@ -0,0 +1,241 @@
+package dev.splityosis.nucleuscore.module;
+
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Finds module classes inside a jar by reading class file headers directly, without loading or initializing
+ * any of the scanned classes.
+ */
+public class ModuleClassScanner {
+
+    private static final String MODULE_INTERNAL_NAME = Module.class.getName().replace('.', '/');
+    private static final String SIGNATURE_DESCRIPTOR = "L" + Signature.class.getName().replace('.', '/') + ";";
+    private static final String ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations";
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    private final ClassLoader classLoader;
+
+    /**
+     * @param classLoader Class loader used to resolve super classes that live outside the scanned jar.
+     */
+    public ModuleClassScanner(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Scans the package for concrete classes that are annotated with {@link Signature} and extend {@link Module}.
+     * @param jarFile The jar file that hosts the package.
+     * @param packagePath The package path in form of "com.package".
+     * @return Binary names of the module classes found, sorted alphabetically.
+     * @throws IOException If the jar couldn't be read.
+     */
+    public List<String> scan(File jarFile, String packagePath) throws IOException {
+        String prefix = packagePath.replace('.', '/');
+        Map<String, ClassHeader> headers = new HashMap<>();
+
+        try (JarFile file = new JarFile(jarFile)) {
+            for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements();) {
+                JarEntry jarEntry = entries.nextElement();
+                String name = jarEntry.getName();
+                if (jarEntry.isDirectory() || !name.startsWith(prefix) || !name.endsWith(".class") || name.startsWith("META-INF/"))
+                    continue;
+                try (InputStream inputStream = file.getInputStream(jarEntry)) {
+                    ClassHeader header = readHeader(new DataInputStream(new BufferedInputStream(inputStream)));
+                    if (header != null)
+                        headers.put(header.name, header);
+                }
+            }
+        }
+
+        List<String> moduleClasses = new ArrayList<>();
+        Map<String, Boolean> extendsModuleCache = new HashMap<>();
+        for (ClassHeader header : headers.values()) {
+            if (!header.annotations.contains(SIGNATURE_DESCRIPTOR))
+                continue;
+            if ((header.accessFlags & (Modifier.ABSTRACT | Modifier.INTERFACE)) != 0)
+                continue;
+            if (extendsModule(header.superName, headers, extendsModuleCache))
+                moduleClasses.add(header.name.replace('/', '.'));
+        }
+        Collections.sort(moduleClasses);
+        return moduleClasses;
+    }
+
+    private boolean extendsModule(String internalName, Map<String, ClassHeader> headers, Map<String, Boolean> cache) {
+        List<String> visited = new ArrayList<>();
+        Boolean result = null;
+        String current = internalName;
+        while (current != null) {
+            if (current.equals(MODULE_INTERNAL_NAME)) {
+                result = true;
+                break;
+            }
+            Boolean cached = cache.get(current);
+            if (cached != null) {
+                result = cached;
+                break;
+            }
+            visited.add(current);
+            ClassHeader header = headers.get(current);
+            if (header == null) {
+                // The hierarchy leaves the jar, resolve the rest without initializing anything.
+                result = isExternalModuleSubclass(current);
+                break;
+            }
+            current = header.superName;
+        }
+        if (result == null)
+            result = false;
+        for (String name : visited)
+            cache.put(name, result);
+        return result;
+    }
+
+    private boolean isExternalModuleSubclass(String internalName) {
+        if (internalName.startsWith("java/") || internalName.startsWith("javax/"))
+            return false;
+        try {
+            return Module.class.isAssignableFrom(Class.forName(internalName.replace('/', '.'), false, classLoader));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the class name, super class, access flags and runtime visible class annotations of a class file.
+     * @return The header, or null if the stream isn't a class file.
+     */
+    static ClassHeader readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != CLASS_MAGIC)
+            return null;
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        int constantPoolCount = in.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNameIndex = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndex[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        ClassHeader header = new ClassHeader();
+        header.accessFlags = in.readUnsignedShort();
+        header.name = utf8[classNameIndex[in.readUnsignedShort()]];
+        int superIndex = in.readUnsignedShort();
+        header.superName = superIndex == 0 ? null : utf8[classNameIndex[superIndex]];
+
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+        skipMembers(in); // fields
+        skipMembers(in); // methods
+
+        int attributesCount = in.readUnsignedShort();
+        for (int i = 0; i < attributesCount; i++) {
+            String attributeName = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (!ANNOTATIONS_ATTRIBUTE.equals(attributeName)) {
+                skipFully(in, length);
+                continue;
+            }
+            int annotationsCount = in.readUnsignedShort();
+            for (int j = 0; j < annotationsCount; j++)
+                header.annotations.add(readAnnotation(in, utf8));
+        }
+        return header;
+    }
+
+    private static void skipMembers(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.skipBytes(6); // access flags, name, descriptor
+            int attributesCount = in.readUnsignedShort();
+            for (int j = 0; j < attributesCount; j++) {
+                in.skipBytes(2);
+                skipFully(in, in.readInt());
+            }
+        }
+    }
+
+    private static String readAnnotation(DataInputStream in, String[] utf8) throws IOException {
+        String descriptor = utf8[in.readUnsignedShort()];
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            in.skipBytes(2); // element name
+            skipElementValue(in, utf8);
+        }
+        return descriptor;
+    }
+
+    private static void skipElementValue(DataInputStream in, String[] utf8) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                in.skipBytes(4);
+                break;
+            case '@':
+                readAnnotation(in, utf8);
+                break;
+            case '[':
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++)
+                    skipElementValue(in, utf8);
+                break;
+            default:
+                in.skipBytes(2);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0)
+                throw new EOFException();
+            remaining -= skipped;
+        }
+    }
+
+    static class ClassHeader {
+        private String name;
+        private String superName;
+        private int accessFlags;
+        private final Set<String> annotations = new HashSet<>();
+    }
+}
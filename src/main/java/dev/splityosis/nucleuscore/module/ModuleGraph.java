@@ -0,0 +1,360 @@
+package dev.splityosis.nucleuscore.module;
+
+import dev.splityosis.nucleuscore.exceptions.DuplicateModuleNameException;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Dependency graph of loaded modules, built from {@link Signature#requiredModules()} and
+ * {@link Signature#enableAfterModule()}. Required modules are hard edges, enable-after modules are soft edges that
+ * only affect ordering.
+ */
+public class ModuleGraph {
+
+    private final Map<String, Module> modulesByName = new LinkedHashMap<>();
+    private final Map<Module, List<Module>> requiredModules = new HashMap<>();
+    private final Map<Module, List<Module>> dependencies = new HashMap<>();
+    private final Map<Module, List<Module>> dependents = new HashMap<>();
+    private final Map<Module, List<String>> unknownModules = new HashMap<>();
+
+    public ModuleGraph(Collection<Module> modules) {
+        for (Module module : modules) {
+            String name = module.getName().toLowerCase();
+            if (modulesByName.containsKey(name)) {
+                new DuplicateModuleNameException("Module with name '"+name+"' is already loaded.").printStackTrace();
+                continue;
+            }
+            modulesByName.put(name, module);
+            requiredModules.put(module, new ArrayList<>());
+            dependencies.put(module, new ArrayList<>());
+            dependents.put(module, new ArrayList<>());
+        }
+
+        for (Module module : modulesByName.values()) {
+            for (String requiredModuleName : module.getSignature().requiredModules()) {
+                Module requiredModule = modulesByName.get(requiredModuleName.toLowerCase());
+                if (requiredModule == null) {
+                    unknownModules.computeIfAbsent(module, m -> new ArrayList<>()).add(requiredModuleName);
+                    continue;
+                }
+                requiredModules.get(module).add(requiredModule);
+                addEdge(module, requiredModule);
+            }
+            // Enable-after modules that aren't loaded are simply ignored
+            for (String enableAfterModuleName : module.getSignature().enableAfterModule()) {
+                Module enableAfterModule = modulesByName.get(enableAfterModuleName.toLowerCase());
+                if (enableAfterModule != null)
+                    addEdge(module, enableAfterModule);
+            }
+        }
+    }
+
+    private void addEdge(Module module, Module dependency) {
+        List<Module> moduleDependencies = dependencies.get(module);
+        if (moduleDependencies.contains(dependency))
+            return;
+        moduleDependencies.add(dependency);
+        dependents.get(dependency).add(module);
+    }
+
+    /**
+     * Resolves the order modules should be enabled in using Kahn's algorithm, in linear time.
+     * @param selector Decides which modules should be enabled. Modules that are rejected are treated as missing by
+     *                 modules requiring them.
+     * @return The resolution.
+     */
+    public Resolution resolve(Predicate<Module> selector) {
+        Resolution resolution = new Resolution();
+
+        // Exclude modules that weren't selected, then propagate to everything requiring them
+        Set<Module> excluded = new HashSet<>();
+        Deque<Module> queue = new ArrayDeque<>();
+        for (Module module : modulesByName.values()) {
+            if (!selector.test(module)) {
+                excluded.add(module);
+                queue.add(module);
+            }
+        }
+        for (Map.Entry<Module, List<String>> entry : unknownModules.entrySet()) {
+            if (excluded.add(entry.getKey())) {
+                queue.add(entry.getKey());
+                resolution.missingDependencies.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+        }
+        while (!queue.isEmpty()) {
+            Module module = queue.poll();
+            for (Module dependent : dependents.get(module)) {
+                if (!requiredModules.get(dependent).contains(module))
+                    continue;
+                List<String> missing = resolution.missingDependencies.get(dependent);
+                if (missing != null)
+                    missing.add(module.getName());
+                else if (excluded.add(dependent)) {
+                    missing = new ArrayList<>();
+                    List<String> unknown = unknownModules.get(dependent);
+                    if (unknown != null)
+                        missing.addAll(unknown);
+                    missing.add(module.getName());
+                    resolution.missingDependencies.put(dependent, missing);
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        // Kahn's algorithm over the remaining modules
+        List<Module> remaining = new ArrayList<>();
+        for (Module module : modulesByName.values())
+            if (!excluded.contains(module))
+                remaining.add(module);
+        Set<Module> unresolved = sort(remaining, resolution.order, resolution.waves);
+
+        // Whatever is left is either part of a cycle or depends on one
+        if (!unresolved.isEmpty())
+            findCycles(unresolved, resolution);
+
+        return resolution;
+    }
+
+    /**
+     * Groups the given modules into waves, ignoring dependencies on modules outside the collection. Modules in the same
+     * wave don't depend on each other, modules that are part of a cycle are put in a final wave of their own.
+     * @param modules The modules to order, typically the enabled ones.
+     * @return The waves, in dependency order.
+     */
+    public List<List<Module>> getWaves(Collection<Module> modules) {
+        List<List<Module>> waves = new ArrayList<>();
+        Set<Module> unresolved = sort(modules, new ArrayList<>(), waves);
+        if (!unresolved.isEmpty())
+            waves.add(new ArrayList<>(unresolved));
+        return waves;
+    }
+
+    /**
+     * Kahn's algorithm over the given modules, dependencies on modules outside of them are ignored.
+     * @return The modules that couldn't be ordered because of cycles.
+     */
+    private Set<Module> sort(Collection<Module> modules, List<Module> order, List<List<Module>> waves) {
+        Set<Module> included = new HashSet<>(modules);
+        Deque<Module> queue = new ArrayDeque<>();
+        Map<Module, Integer> inDegree = new LinkedHashMap<>();
+        for (Module module : modules) {
+            int degree = 0;
+            for (Module dependency : getDependencies(module))
+                if (included.contains(dependency))
+                    degree++;
+            inDegree.put(module, degree);
+            if (degree == 0)
+                queue.add(module);
+        }
+
+        Map<Module, Integer> levels = new HashMap<>();
+        while (!queue.isEmpty()) {
+            Module module = queue.poll();
+            order.add(module);
+
+            // A module's wave is one past the deepest wave among its dependencies
+            int level = levels.getOrDefault(module, 0);
+            if (level == waves.size())
+                waves.add(new ArrayList<>());
+            waves.get(level).add(module);
+
+            for (Module dependent : getDependents(module)) {
+                Integer degree = inDegree.get(dependent);
+                if (degree == null)
+                    continue;
+                levels.put(dependent, Math.max(levels.getOrDefault(dependent, 0), level + 1));
+                inDegree.put(dependent, degree - 1);
+                if (degree - 1 == 0)
+                    queue.add(dependent);
+            }
+        }
+
+        Set<Module> unresolved = new LinkedHashSet<>();
+        for (Map.Entry<Module, Integer> entry : inDegree.entrySet())
+            if (entry.getValue() > 0)
+                unresolved.add(entry.getKey());
+        return unresolved;
+    }
+
+    /**
+     * Tarjan's strongly connected components over the unresolved modules.
+     */
+    private void findCycles(Set<Module> unresolved, Resolution resolution) {
+        Map<Module, Integer> index = new HashMap<>();
+        Map<Module, Integer> lowLink = new HashMap<>();
+        Deque<Module> stack = new ArrayDeque<>();
+        Set<Module> onStack = new HashSet<>();
+        Set<Module> inCycle = new HashSet<>();
+        int counter = 0;
+
+        for (Module root : unresolved) {
+            if (index.containsKey(root))
+                continue;
+            // Iterative DFS, every frame is a module and the position of the next dependency to visit
+            Deque<Object[]> callStack = new ArrayDeque<>();
+            callStack.push(new Object[]{root, 0});
+            index.put(root, counter);
+            lowLink.put(root, counter++);
+            stack.push(root);
+            onStack.add(root);
+
+            while (!callStack.isEmpty()) {
+                Object[] frame = callStack.peek();
+                Module module = (Module) frame[0];
+                List<Module> moduleDependencies = dependencies.get(module);
+                int position = (int) frame[1];
+
+                if (position < moduleDependencies.size()) {
+                    frame[1] = position + 1;
+                    Module dependency = moduleDependencies.get(position);
+                    if (!unresolved.contains(dependency))
+                        continue;
+                    if (!index.containsKey(dependency)) {
+                        index.put(dependency, counter);
+                        lowLink.put(dependency, counter++);
+                        stack.push(dependency);
+                        onStack.add(dependency);
+                        callStack.push(new Object[]{dependency, 0});
+                    }
+                    else if (onStack.contains(dependency))
+                        lowLink.put(module, Math.min(lowLink.get(module), index.get(dependency)));
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    Module parent = (Module) callStack.peek()[0];
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(module)));
+                }
+                if (!lowLink.get(module).equals(index.get(module)))
+                    continue;
+
+                List<Module> component = new ArrayList<>();
+                Module member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (member != module);
+
+                if (component.size() > 1 || dependencies.get(module).contains(module)) {
+                    resolution.cycles.add(component);
+                    inCycle.addAll(component);
+                }
+            }
+        }
+
+        for (Module module : unresolved)
+            if (!inCycle.contains(module))
+                resolution.blocked.add(module);
+    }
+
+    /**
+     * @return The module with the given name, case-insensitive, or null.
+     */
+    public Module getModule(String name) {
+        return modulesByName.get(name.toLowerCase());
+    }
+
+    /**
+     * @return All modules in the graph.
+     */
+    public Collection<Module> getModules() {
+        return Collections.unmodifiableCollection(modulesByName.values());
+    }
+
+    public boolean contains(Module module) {
+        return dependencies.containsKey(module);
+    }
+
+    /**
+     * @return The loaded modules that this module requires or is enabled after.
+     */
+    public List<Module> getDependencies(Module module) {
+        List<Module> list = dependencies.get(module);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return The loaded modules that require or are enabled after this module.
+     */
+    public List<Module> getDependents(Module module) {
+        List<Module> list = dependents.get(module);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return The loaded modules this module requires, excluding enable-after modules.
+     */
+    public List<Module> getRequiredModules(Module module) {
+        List<Module> list = requiredModules.get(module);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return Every module that directly or indirectly depends on this module.
+     */
+    public Set<Module> getTransitiveDependents(Module module) {
+        Set<Module> result = new LinkedHashSet<>();
+        Deque<Module> queue = new ArrayDeque<>(getDependents(module));
+        while (!queue.isEmpty()) {
+            Module dependent = queue.poll();
+            if (result.add(dependent))
+                queue.addAll(getDependents(dependent));
+        }
+        return result;
+    }
+
+    /**
+     * @return Names of required modules that aren't loaded at all.
+     */
+    public List<String> getUnknownModules(Module module) {
+        List<String> list = unknownModules.get(module);
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    public static class Resolution {
+        private final List<Module> order = new ArrayList<>();
+        private final List<List<Module>> waves = new ArrayList<>();
+        private final Map<Module, List<String>> missingDependencies = new LinkedHashMap<>();
+        private final List<List<Module>> cycles = new ArrayList<>();
+        private final List<Module> blocked = new ArrayList<>();
+
+        /**
+         * @return The modules that can be enabled, every module comes after all of its dependencies.
+         */
+        public List<Module> getOrder() {
+            return Collections.unmodifiableList(order);
+        }
+
+        /**
+         * @return The modules that can be enabled grouped into waves, modules in the same wave don't depend on each
+         * other and only depend on modules of earlier waves.
+         */
+        public List<List<Module>> getWaves() {
+            return Collections.unmodifiableList(waves);
+        }
+
+        /**
+         * @return Modules that can't enable because required modules are missing or won't enable, mapped to the names of those modules.
+         */
+        public Map<Module, List<String>> getMissingDependencies() {
+            return Collections.unmodifiableMap(missingDependencies);
+        }
+
+        /**
+         * @return Every group of modules that (indirectly) depend on each other.
+         */
+        public List<List<Module>> getCycles() {
+            return Collections.unmodifiableList(cycles);
+        }
+
+        /**
+         * @return Modules that aren't part of a cycle but depend on one.
+         */
+        public List<Module> getBlocked() {
+            return Collections.unmodifiableList(blocked);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.splityosis.nucleuscore.module;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of {@link ModuleClassScanner} results. Entries are keyed by the jar's size and last modified time, the
+ * content hash is only computed when those changed, so an unchanged jar is never read and never scanned twice.
+ */
+public class ModuleIndex {
+
+    private static final String HEADER = "Nucleus module discovery index, do not edit.";
+
+    private final File indexFile;
+    private final ModuleClassScanner scanner;
+    private Properties properties;
+
+    public ModuleIndex(File indexFile, ModuleClassScanner scanner) {
+        this.indexFile = indexFile;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Gets the module classes of a package, scanning the jar only if it changed since it was last indexed.
+     * @param jarFile The jar file that hosts the package.
+     * @param packagePath The package path in form of "com.package".
+     * @return Binary names of the module classes in the package.
+     * @throws IOException If the jar couldn't be read.
+     */
+    public synchronized List<String> getModuleClassNames(File jarFile, String packagePath) throws IOException {
+        String key = jarFile.getAbsolutePath() + "!" + packagePath;
+        long size = jarFile.length();
+        long lastModified = jarFile.lastModified();
+
+        String entry = getProperties().getProperty(key);
+        String[] split = entry == null ? null : entry.split(";", -1);
+        boolean sameSize = split != null && split.length == 4 && split[0].equals(String.valueOf(size));
+        if (sameSize && split[1].equals(String.valueOf(lastModified)))
+            return toClassNames(split[3]);
+
+        // Only hash when the cheap checks fail, a jar that was merely touched or copied isn't scanned again
+        String hash = hash(jarFile);
+        if (sameSize && split[2].equals(hash)) {
+            getProperties().setProperty(key, size + ";" + lastModified + ";" + hash + ";" + split[3]);
+            save();
+            return toClassNames(split[3]);
+        }
+
+        List<String> classNames = scanner.scan(jarFile, packagePath);
+        getProperties().setProperty(key, size + ";" + lastModified + ";" + hash + ";" + String.join(",", classNames));
+        save();
+        return classNames;
+    }
+
+    private static List<String> toClassNames(String joined) {
+        return joined.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(joined.split(",")));
+    }
+
+    /**
+     * Drops every cached entry, forcing the next lookup to scan.
+     */
+    public synchronized void invalidate() {
+        getProperties().clear();
+        save();
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    private Properties getProperties() {
+        if (properties != null)
+            return properties;
+        properties = new Properties();
+        if (indexFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(indexFile)) {
+                properties.load(inputStream);
+            } catch (IOException | IllegalArgumentException e) {
+                // A corrupted index is simply rebuilt
+                properties.clear();
+            }
+        }
+        return properties;
+    }
+
+    private void save() {
+        try (OutputStream outputStream = new FileOutputStream(indexFile)) {
+            properties.store(outputStream, HEADER);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1)
+                digest.update(buffer, 0, bytesRead);
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        for (byte b : digest.digest())
+            stringBuilder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return stringBuilder.toString();
+    }
+}
@@ -5,13 +5,21 @@ import dev.splityosis.nucleuscore.exceptions.DuplicateModuleNameException;
 import dev.splityosis.nucleuscore.exceptions.InvalidModuleDeclarationException;
 import dev.splityosis.nucleuscore.exceptions.MissingModuleDependency;
 import dev.splityosis.nucleuscore.exceptions.MissingPluginDependency;
+import dev.splityosis.nucleuscore.scheduler.ExecutorSettings;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -19,9 +27,23 @@ public class ModuleLoader {
 
     private final Map<Class<? extends Module>, Module> classModuleMap;
     private final Map<String, Module> modulesMap;
+    private final ModuleIndex moduleIndex;
+    private final LifecycleTimings lifecycleTimings = new LifecycleTimings();
     private List<Module> enabledModules;
+    private ModuleGraph moduleGraph;
+    private boolean parallelEnabling = false;
+    private long shutdownTimeoutMillis = 5000;
+    private long prepareTimeoutMillis = 30000;
+    private double tickBudgetMillis = 5;
+    private ExecutorSettings executorSettings = ExecutorSettings.defaults();
+    private ExecutorService lifecycleExecutor;
+    private static final int SERIAL_LIFECYCLE_THREADS = 2;
     private Nucleus nucleus;
     private File modulesFolder;
+    private final Map<File, ModuleClassLoader> moduleJars = new LinkedHashMap<>();
+    private final List<UnloadedJar> unloadedJars = new ArrayList<>();
+    private final ReferenceQueue<ModuleClassLoader> collectedClassLoaders = new ReferenceQueue<>();
+    private final LazyActivation lazyActivation;
 
     public ModuleLoader(Nucleus nucleus, File modulesFolder) {
         this.nucleus = nucleus;
@@ -31,146 +53,542 @@ public class ModuleLoader {
         modulesMap = new HashMap<>();
         classModuleMap = new HashMap<>();
         enabledModules = new ArrayList<>();
+        lazyActivation = new LazyActivation(nucleus, this);
+        moduleIndex = new ModuleIndex(new File(modulesFolder, ".module-index"), new ModuleClassScanner(ModuleLoader.class.getClassLoader()));
     }
 
     /**
      * Loads all modules in given package.
+     * Module classes are discovered from the jar's class file headers, non-module classes are never loaded.
      * @param jarFile The jar file that hosts the package.
      * @param packagePath The package path in form of "com.package".
      */
     public void loadModules(File jarFile, String packagePath){
-        Set<Class<?>> classes = null;
-        classes = getClassesInPackage(jarFile, packagePath);
-        nucleus.log("Found "+classes.size() + " classes in package "+packagePath);
-        if (!classes.isEmpty())
-            for (Class<?> aClass : classes) {
-                try {
-                    if (Module.class.isAssignableFrom(aClass)) {
-                        validateModuleClass(aClass);
-                        try {
-                            loadModuleClass((Class<? extends Module>) aClass);
-                        }catch (InvalidModuleDeclarationException e){
-                            e.printStackTrace();
-                        }
-                    }
-                } catch (InvalidModuleDeclarationException e) {
-                    e.printStackTrace();
-                }
+        List<String> classNames;
+        long scanStart = System.nanoTime();
+        try {
+            classNames = moduleIndex.getModuleClassNames(jarFile, packagePath);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            lifecycleTimings.addPhase(LifecycleTimings.PHASE_SCAN, System.nanoTime() - scanStart);
+        }
+        nucleus.log("Found "+classNames.size() + " module classes in package "+packagePath);
+        for (String className : classNames) {
+            long loadStart = System.nanoTime();
+            try {
+                Class<?> aClass = Class.forName(className, true, ModuleLoader.class.getClassLoader());
+                validateModuleClass(aClass);
+                Module module = loadModuleClass((Class<? extends Module>) aClass);
+                lifecycleTimings.record(module, LifecycleTimings.Operation.LOAD, System.nanoTime() - loadStart);
+            } catch (InvalidModuleDeclarationException e) {
+                e.printStackTrace();
+            } catch (ClassNotFoundException | LinkageError e) {
+                nucleus.log("&cCouldn't load module class '"+className+"'");
+                e.printStackTrace();
+            } finally {
+                lifecycleTimings.addPhase(LifecycleTimings.PHASE_LOAD, System.nanoTime() - loadStart);
             }
+        }
     }
 
-    public void initializeModulesState(){
-//        Bukkit.getScheduler().runTaskLater(nucleus.getPlugin(), () -> {
-            LinkedList<PendingModuleProfile> moduleClassesToLoad = new LinkedList<>();
-            for (Class<? extends Module> aClass : classModuleMap.keySet())
-                moduleClassesToLoad.add(new PendingModuleProfile(aClass));
-
-            Map<String, PendingModuleProfile> modulesByNameMap = new HashMap<>();
-            // Putting modules into the map by name
-            for (PendingModuleProfile pendingModuleProfile : moduleClassesToLoad) {
-                String name = pendingModuleProfile.getLowerCaseName();
-                if (modulesByNameMap.containsKey(name)){
-                    moduleClassesToLoad.remove(pendingModuleProfile);
-                    new DuplicateModuleNameException("Module with name '"+name+"' is already loaded.").printStackTrace();
+    /**
+     * Loads every module jar in the modules folder, each through its own {@link ModuleClassLoader}.
+     */
+    public void loadModuleJars(){
+        File[] jars = modulesFolder.listFiles((dir, name) -> name.toLowerCase().endsWith(".jar"));
+        if (jars == null)
+            return;
+        deleteLoadedCopies();
+        Arrays.sort(jars);
+        for (File jar : jars) {
+            if (getModuleJar(jar) == null)
+                loadModuleJar(jar);
+        }
+    }
+
+    /**
+     * Loads the modules of a jar through a class loader of its own. The jar is copied before it's opened, so it can be
+     * replaced while loaded and swapped in with {@link #swapModuleJar(File)}.
+     * @param jarFile The jar, typically in the modules folder.
+     * @return The loaded modules, they aren't enabled yet.
+     */
+    public List<Module> loadModuleJar(File jarFile){
+        File source = jarFile.getAbsoluteFile();
+        if (getModuleJar(source) != null)
+            throw new IllegalStateException("Module jar '"+source.getName()+"' is already loaded");
+
+        ModuleClassLoader classLoader;
+        List<String> classNames;
+        try {
+            File loadedFolder = new File(modulesFolder, ".loaded");
+            if (!loadedFolder.exists())
+                loadedFolder.mkdirs();
+            String name = source.getName().substring(0, source.getName().length() - 4);
+            File loadedFile = new File(loadedFolder, name + "-" + System.currentTimeMillis() + ".jar");
+            Files.copy(source.toPath(), loadedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            classLoader = new ModuleClassLoader(this, source, loadedFile, ModuleLoader.class.getClassLoader());
+            classNames = new ModuleClassScanner(classLoader).scan(loadedFile, "");
+        } catch (IOException e) {
+            nucleus.log("&cCouldn't read module jar '"+source.getName()+"'");
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+
+        for (String className : classNames) {
+            long loadStart = System.nanoTime();
+            try {
+                Class<?> aClass = Class.forName(className, true, classLoader);
+                validateModuleClass(aClass);
+                String moduleName = aClass.getAnnotation(Signature.class).name();
+                if (getModule(moduleName) != null) {
+                    new DuplicateModuleNameException("Module with name '"+moduleName+"' is already loaded, skipping it in "+source.getName()).printStackTrace();
                     continue;
                 }
-                modulesByNameMap.put(name, pendingModuleProfile);
+                Module module = loadModuleClass((Class<? extends Module>) aClass);
+                classLoader.addModule(module);
+                lifecycleTimings.record(module, LifecycleTimings.Operation.LOAD, System.nanoTime() - loadStart);
+            } catch (InvalidModuleDeclarationException e) {
+                e.printStackTrace();
+            } catch (ClassNotFoundException | LinkageError e) {
+                nucleus.log("&cCouldn't load module class '"+className+"' from "+source.getName());
+                e.printStackTrace();
             }
+        }
 
-            if (!moduleClassesToLoad.isEmpty())
-                while(scan(moduleClassesToLoad, modulesByNameMap));
+        if (classLoader.getModules().isEmpty()) {
+            nucleus.log("&cNo modules found in "+source.getName());
+            classLoader.unload();
+            return new ArrayList<>();
+        }
+        synchronized (moduleJars) {
+            moduleJars.put(source, classLoader);
+        }
+        moduleGraph = new ModuleGraph(classModuleMap.values());
+        nucleus.log("Loaded "+classLoader.getModules().size()+" modules from "+source.getName());
+        return new ArrayList<>(classLoader.getModules());
+    }
 
-            if (moduleClassesToLoad.size() != 0){
-                // Some classes couldn't be enabled
-                getNucleus().log("&4Modules couldn't enable because of a circular dependency structure:");
-                for (PendingModuleProfile pendingModuleProfile : moduleClassesToLoad) {
-                    getNucleus().log(" &c- "+pendingModuleProfile.getSignature().name());
+    /**
+     * Disables and unloads the modules of a jar. Enabled modules depending on them are disabled first.
+     * @return False if the jar isn't loaded.
+     */
+    public boolean unloadModuleJar(File jarFile){
+        ModuleClassLoader classLoader;
+        synchronized (moduleJars) {
+            classLoader = moduleJars.get(jarFile.getAbsoluteFile());
+        }
+        if (classLoader == null)
+            return false;
+        disableInOrder(getEnabledWithDependents(classLoader.getModules()));
+        unregisterModuleJar(classLoader);
+        return true;
+    }
+
+    /**
+     * Replaces a loaded jar with its current content, or loads it if it isn't loaded yet. Other module jars that depend
+     * on the jar, either through a module requiring one of its modules or by using its classes, are reloaded with it,
+     * since they would otherwise keep running the old classes. Every enabled module of these jars and every enabled
+     * module depending on them is disabled, dependents first, the jars are reloaded through new class loaders and the
+     * modules are enabled again, dependencies first. Modules the jars add are enabled if their config says so. The
+     * old class loaders are checked for being collectable later on.
+     * @param jarFile The jar, typically in the modules folder.
+     * @return False if the new jar has no modules.
+     */
+    public boolean swapModuleJar(File jarFile){
+        File source = jarFile.getAbsoluteFile();
+        ModuleClassLoader oldClassLoader;
+        synchronized (moduleJars) {
+            oldClassLoader = moduleJars.get(source);
+        }
+        Set<String> toEnable = new LinkedHashSet<>();
+        Set<String> wereEnabled = new HashSet<>();
+        List<File> jars = new ArrayList<>();
+        jars.add(source);
+        if (oldClassLoader != null) {
+            List<ModuleClassLoader> oldClassLoaders = getDependentJars(oldClassLoader);
+            List<Module> oldModules = new ArrayList<>();
+            for (ModuleClassLoader classLoader : oldClassLoaders) {
+                oldModules.addAll(classLoader.getModules());
+                if (classLoader != oldClassLoader)
+                    jars.add(classLoader.getJarFile());
+            }
+            Set<Module> affected = getEnabledWithDependents(oldModules);
+            for (Module module : affected)
+                toEnable.add(module.getName().toLowerCase());
+            wereEnabled.addAll(toEnable);
+            nucleus.log("&7Swapping "+source.getName()+(jars.size() > 1 ? " and reloading "+(jars.size() - 1)+" dependent jars" : "")+", disabling "+affected.size()+" modules...");
+            disableInOrder(affected);
+            for (ModuleClassLoader classLoader : oldClassLoaders)
+                unregisterModuleJar(classLoader);
+        }
+
+        List<Module> loaded = loadModuleJar(source);
+        boolean swapped = !loaded.isEmpty();
+        for (File jar : jars.subList(1, jars.size())) {
+            if (jar.exists())
+                loaded.addAll(loadModuleJar(jar));
+        }
+        for (Module module : loaded)
+            if (isModuleSetToEnabled(module))
+                toEnable.add(module.getName().toLowerCase());
+
+        List<Module> modules = new ArrayList<>();
+        for (String name : toEnable) {
+            Module module = getModule(name);
+            if (module != null)
+                modules.add(module);
+        }
+        for (List<Module> wave : getOrBuildModuleGraph().getWaves(modules))
+            for (Module module : wave)
+                if (!isModuleEnabled(module)) {
+                    if (wereEnabled.contains(module.getName().toLowerCase()))
+                        enableModule(module);
+                    else
+                        startModule(module);
+                }
+        return swapped;
+    }
+
+    /**
+     * @return The jar's class loader followed by the class loaders of every module jar depending on it, directly or
+     * through other jars, each after the jar it depends on.
+     */
+    private List<ModuleClassLoader> getDependentJars(ModuleClassLoader classLoader){
+        ModuleGraph graph = getOrBuildModuleGraph();
+        List<ModuleClassLoader> result = new ArrayList<>();
+        Deque<ModuleClassLoader> queue = new ArrayDeque<>();
+        queue.add(classLoader);
+        while (!queue.isEmpty()) {
+            ModuleClassLoader current = queue.poll();
+            if (result.contains(current))
+                continue;
+            result.add(current);
+            queue.addAll(current.getLinkedClassLoaders());
+            for (Module module : current.getModules())
+                for (Module dependent : graph.getTransitiveDependents(module)) {
+                    ModuleClassLoader dependentClassLoader = getModuleClassLoader(dependent);
+                    if (dependentClassLoader != null)
+                        queue.add(dependentClassLoader);
                 }
+        }
+        return result;
+    }
+
+    private Set<Module> getEnabledWithDependents(Collection<Module> modules){
+        ModuleGraph graph = getOrBuildModuleGraph();
+        Set<Module> result = new LinkedHashSet<>();
+        for (Module module : modules) {
+            if (isModuleEnabled(module))
+                result.add(module);
+            for (Module dependent : graph.getTransitiveDependents(module))
+                if (isModuleEnabled(dependent))
+                    result.add(dependent);
+        }
+        return result;
+    }
+
+    private void disableInOrder(Collection<Module> modules){
+        List<List<Module>> waves = getOrBuildModuleGraph().getWaves(modules);
+        for (int i = waves.size() - 1; i >= 0; i--)
+            for (Module module : waves.get(i))
+                disableModule(module);
+    }
+
+    /**
+     * Forgets the modules of a jar and closes its class loader.
+     */
+    private void unregisterModuleJar(ModuleClassLoader classLoader){
+        for (Module module : classLoader.getModules()) {
+            lazyActivation.forget(module);
+            enabledModules.remove(module);
+            modulesMap.remove(module.getName().toLowerCase());
+            classModuleMap.remove(module.getClazz());
+        }
+        synchronized (moduleJars) {
+            moduleJars.remove(classLoader.getJarFile());
+        }
+        moduleGraph = new ModuleGraph(classModuleMap.values());
+        nucleus.getListenerProfiler().forgetClassLoader(classLoader);
+        classLoader.unload();
+
+        pollCollectedClassLoaders();
+        synchronized (unloadedJars) {
+            unloadedJars.add(new UnloadedJar(classLoader, collectedClassLoaders));
+        }
+    }
+
+    /**
+     * Forgets the unloaded jars whose class loader was garbage collected. Collection isn't forced, the class loader
+     * is collected whenever the garbage collector gets to it, unless something still references the jar's classes.
+     */
+    private void pollCollectedClassLoaders(){
+        Reference<? extends ModuleClassLoader> reference;
+        while ((reference = collectedClassLoaders.poll()) != null) {
+            synchronized (unloadedJars) {
+                unloadedJars.remove(reference);
             }
-//        }, 1L);
+            nucleus.log("&7The old class loader of "+((UnloadedJar) reference).jarName+" was collected.");
+        }
     }
 
-    private boolean scan(LinkedList<PendingModuleProfile> pendingModuleProfileList, Map<String, PendingModuleProfile> modulesByNameMap) {
-        int pendingSize = pendingModuleProfileList.size();
+    /**
+     * @return Amount of class loaders of unloaded jars that weren't garbage collected yet.
+     */
+    public int getRetainedClassLoaderCount(){
+        pollCollectedClassLoaders();
+        synchronized (unloadedJars) {
+            return unloadedJars.size();
+        }
+    }
 
-        Iterator<PendingModuleProfile> iterator = pendingModuleProfileList.iterator();
-        modules:
-        while (iterator.hasNext()) {
-            PendingModuleProfile pendingModuleProfile = iterator.next();
+    /**
+     * A class loader that stays in memory long after its jar was unloaded means something still references the jar's
+     * classes, such as a static cache, a thread or a listener registered outside of Nucleus, and the old classes stay
+     * in memory until a restart.
+     * @return The names of unloaded jars whose class loader wasn't garbage collected yet, with the time they were
+     * unloaded at in milliseconds.
+     */
+    public Map<String, Long> getRetainedClassLoaders(){
+        pollCollectedClassLoaders();
+        Map<String, Long> retained = new LinkedHashMap<>();
+        synchronized (unloadedJars) {
+            for (UnloadedJar unloadedJar : unloadedJars)
+                retained.put(unloadedJar.jarName, unloadedJar.unloadedAt);
+        }
+        return retained;
+    }
 
-            // Check if meant to be enabled (meaning if the user disabled it)
-            if (!isModuleSetToEnabled(getModule(pendingModuleProfile.getModuleClass()))) {
-                iterator.remove();
-                pendingModuleProfile.setWillNeverEnable(true);
-                continue modules;
+    /**
+     * Looks a class up in the module jars other than the requesting one.
+     * @return The class, or null if no other jar has it.
+     */
+    Class<?> findModuleJarClass(String name, ModuleClassLoader requester){
+        List<ModuleClassLoader> classLoaders;
+        synchronized (moduleJars) {
+            classLoaders = new ArrayList<>(moduleJars.values());
+        }
+        for (ModuleClassLoader classLoader : classLoaders) {
+            if (classLoader == requester)
+                continue;
+            Class<?> clazz = classLoader.findJarClass(name);
+            if (clazz != null) {
+                classLoader.addLinkedClassLoader(requester);
+                return clazz;
             }
+        }
+        return null;
+    }
+
+    /**
+     * @return The class loaders of the loaded module jars.
+     */
+    public Collection<ModuleClassLoader> getModuleJars(){
+        synchronized (moduleJars) {
+            return new ArrayList<>(moduleJars.values());
+        }
+    }
+
+    /**
+     * @return The class loader of a loaded jar, or null if the jar isn't loaded.
+     */
+    public ModuleClassLoader getModuleJar(File jarFile){
+        synchronized (moduleJars) {
+            return moduleJars.get(jarFile.getAbsoluteFile());
+        }
+    }
+
+    /**
+     * @return The class loader of the jar the module was loaded from, or null if it's part of the plugin.
+     */
+    public ModuleClassLoader getModuleClassLoader(Module module){
+        ClassLoader classLoader = module.getClazz().getClassLoader();
+        return classLoader instanceof ModuleClassLoader ? (ModuleClassLoader) classLoader : null;
+    }
+
+    private void deleteLoadedCopies(){
+        File[] copies = new File(modulesFolder, ".loaded").listFiles();
+        if (copies == null)
+            return;
+        Set<File> inUse = new HashSet<>();
+        for (ModuleClassLoader classLoader : getModuleJars())
+            inUse.add(classLoader.getLoadedFile().getAbsoluteFile());
+        for (File copy : copies)
+            if (!inUse.contains(copy.getAbsoluteFile()))
+                copy.delete();
+    }
+
+    public void initializeModulesState(){
+        long loadStart = System.nanoTime();
+        loadModuleJars();
+        lifecycleTimings.addPhase(LifecycleTimings.PHASE_LOAD, System.nanoTime() - loadStart);
+
+        long resolveStart = System.nanoTime();
+        moduleGraph = new ModuleGraph(classModuleMap.values());
+        ModuleGraph.Resolution resolution = moduleGraph.resolve(module -> {
+            // Check if meant to be enabled (meaning if the user disabled it)
+            if (!isModuleSetToEnabled(module))
+                return false;
 
             // Check if required plugins are on the server
-            for (String requiredPlugin : pendingModuleProfile.getSignature().requiredPlugins()) {
-                if (!Bukkit.getPluginManager().isPluginEnabled(requiredPlugin)) {
-                    List<String> missingPlugins = new ArrayList<>();
-                    for (String s : pendingModuleProfile.getSignature().requiredPlugins()) {
-                        if (!Bukkit.getPluginManager().isPluginEnabled(s))
-                            missingPlugins.add(s);
-                    }
-                    new MissingPluginDependency(pendingModuleProfile.getSignature().name(), missingPlugins).printStackTrace();
-                    iterator.remove();
-                    pendingModuleProfile.setWillNeverEnable(true);
-                    continue modules;
-                }
+            List<String> missingPlugins = getMissingPlugins(module);
+            if (!missingPlugins.isEmpty()) {
+                new MissingPluginDependency(module.getName(), missingPlugins).printStackTrace();
+                return false;
             }
+            return true;
+        });
 
-            // Check if required modules are on the server
-            for (String requiredModuleName : pendingModuleProfile.getLowerCaseRequiredModules()) {
-                PendingModuleProfile requiredModuleProfile = modulesByNameMap.get(requiredModuleName);
-                Module requiredModule = getModule(requiredModuleProfile.getModuleClass());
-                if (requiredModuleProfile.isWillNeverEnable() || !isModuleSetToEnabled(requiredModule)) {
-                    List<String> missingModules = new ArrayList<>();
-                    for (String s : pendingModuleProfile.getSignature().requiredModules()) {
-                        Module anotherRequiredModule = getModule(s);
-                        PendingModuleProfile anotherPendingProfile = modulesByNameMap.get(s.toLowerCase());
-                        if (anotherRequiredModule == null || anotherPendingProfile.isWillNeverEnable() || !isModuleSetToEnabled(anotherRequiredModule))
-                            missingModules.add(s);
-                    }
-                    new MissingModuleDependency(pendingModuleProfile.getSignature().name(), missingModules).printStackTrace();
+        for (Map.Entry<Module, List<String>> entry : resolution.getMissingDependencies().entrySet())
+            new MissingModuleDependency(entry.getKey().getName(), entry.getValue()).printStackTrace();
 
-                    iterator.remove();
-                    pendingModuleProfile.setWillNeverEnable(true);
-                    continue modules;
-                }
+        lifecycleTimings.addPhase(LifecycleTimings.PHASE_RESOLVE, System.nanoTime() - resolveStart);
 
-                if (!requiredModule.isEnabled)
-                    continue modules;
-            }
+        long enableStart = System.nanoTime();
+        if (parallelEnabling)
+            enableInWaves(resolution.getWaves());
+        else
+            for (Module module : resolution.getOrder())
+                startModule(module);
+        lifecycleTimings.addPhase(LifecycleTimings.PHASE_ENABLE, System.nanoTime() - enableStart);
 
-            // Check if load-after modules are
-            for (String lowerCaseLoadAfterModule : pendingModuleProfile.getLowerCaseLoadAfterModules()) {
-                PendingModuleProfile enableAfterModule = modulesByNameMap.get(lowerCaseLoadAfterModule);
-                Module requiredModule = getModule(enableAfterModule.getModuleClass());
-                if (!requiredModule.isEnabled && !enableAfterModule.willNeverLoad)
-                    continue modules;
+        if (!resolution.getCycles().isEmpty() || !resolution.getBlocked().isEmpty()){
+            // Some classes couldn't be enabled
+            getNucleus().log("&4Modules couldn't enable because of a circular dependency structure:");
+            for (List<Module> cycle : resolution.getCycles()) {
+                StringBuilder stringBuilder = new StringBuilder();
+                for (Module module : cycle)
+                    stringBuilder.append(module.getName()).append(" -> ");
+                getNucleus().log(" &c- "+stringBuilder+cycle.get(0).getName());
             }
+            for (Module module : resolution.getBlocked())
+                getNucleus().log(" &c- "+module.getName()+" &7(depends on a circular dependency)");
+        }
+
+        lifecycleTimings.completeStartup();
+        nucleus.log(lifecycleTimings.getSummary(10));
+        try {
+            lifecycleTimings.writeJson(new File(modulesFolder, "startup-timings.json"));
+        } catch (IOException e) {
+            nucleus.log("&cCouldn't write the startup timings.");
+            e.printStackTrace();
+        }
+    }
 
-            Module module = getModule(pendingModuleProfile.getModuleClass());
-            enableModule(module);
-            iterator.remove();
+    /**
+     * Enables modules wave by wave. The preparation of every module in a wave runs concurrently, while
+     * {@link Module#onEnable()} is still called one module at a time on the main thread.
+     */
+    private void enableInWaves(List<List<Module>> waves){
+        for (List<Module> wave : waves) {
+            Map<Module, CompletableFuture<Void>> preparations = new LinkedHashMap<>();
+            for (Module module : wave) {
+                if (module.getSignature().lazy()) {
+                    lazyActivation.makeDormant(module);
+                    continue;
+                }
+                nucleus.log("&7Enabling "+module.getName()+"...");
+                preparations.put(module, prepareModule(module));
+            }
+            for (Map.Entry<Module, CompletableFuture<Void>> entry : preparations.entrySet())
+                completeEnable(entry.getKey(), entry.getValue());
         }
+    }
 
-        return pendingSize == pendingModuleProfileList.size();
+    private List<String> getMissingPlugins(Module module){
+        List<String> missingPlugins = new ArrayList<>();
+        for (String requiredPlugin : module.getSignature().requiredPlugins()) {
+            if (!Bukkit.getPluginManager().isPluginEnabled(requiredPlugin))
+                missingPlugins.add(requiredPlugin);
+        }
+        return missingPlugins;
     }
 
+    /**
+     * Disables all enabled modules, dependents before their dependencies. Modules that don't depend on each other
+     * are disabled together and their {@link Module#onFlushAsync(Executor)} runs concurrently, each bounded by its
+     * shutdown timeout.
+     * @return How long every module took and whether it timed out.
+     */
+    public ShutdownReport onDisable(){
+        ShutdownReport report = new ShutdownReport();
+        long shutdownStart = System.nanoTime();
+        lazyActivation.shutdown();
 
-    public void onDisable(){
-        //TODO @Sllly make it so they disable in the right order
-        for (Module enabledModule : new ArrayList<>(enabledModules)) {
-            try {
-                disableModule(enabledModule, false);
-            }catch (Exception e){
-                e.printStackTrace();
+        List<List<Module>> waves = getOrBuildModuleGraph().getWaves(new ArrayList<>(enabledModules));
+        for (int i = waves.size() - 1; i >= 0; i--) {
+            Map<Module, CompletableFuture<Void>> flushes = new LinkedHashMap<>();
+            Map<Module, Long> startTimes = new HashMap<>();
+            for (Module module : waves.get(i)) {
+                startTimes.put(module, System.nanoTime());
+                flushes.put(module, stopModule(module, false));
+            }
+
+            for (Map.Entry<Module, CompletableFuture<Void>> entry : flushes.entrySet()) {
+                Module module = entry.getKey();
+                long start = startTimes.get(module);
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(getShutdownTimeoutMillis(module));
+                boolean timedOut = false;
+                boolean failed = entry.getValue() == null;
+                if (!failed) {
+                    try {
+                        entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        nucleus.log("&eSuccessfully &cdisabled &emodule &a&l"+module.getName()+"&e.");
+                    } catch (TimeoutException e) {
+                        timedOut = true;
+                        nucleus.log("&cModule '"+module.getName()+"' didn't finish flushing within "+getShutdownTimeoutMillis(module)+"ms, moving on.");
+                    } catch (ExecutionException e) {
+                        failed = true;
+                        nucleus.log("&cAn error occurred while flushing module '"+module.getName()+"'");
+                        e.getCause().printStackTrace();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        timedOut = true;
+                    }
+                }
+                lifecycleTimings.record(module, LifecycleTimings.Operation.DISABLE, System.nanoTime() - start);
+                report.add(new ShutdownReport.Entry(module.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), timedOut, failed));
             }
         }
+
+        synchronized (this) {
+            if (lifecycleExecutor != null)
+                lifecycleExecutor.shutdownNow();
+        }
+        for (ModuleClassLoader classLoader : getModuleJars())
+            classLoader.unload();
+        synchronized (moduleJars) {
+            moduleJars.clear();
+        }
+
+        // Make sure every module config hits the disk before the server goes down
+        try {
+            nucleus.getConfigPersistenceService().flushAll().get(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            nucleus.log("&cSome module configs couldn't be saved.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - shutdownStart));
+
+        nucleus.log("&7Disabled "+report.getEntries().size()+" modules in "+report.getTotalMillis()+"ms.");
+        for (ShutdownReport.Entry entry : report.getTimedOut())
+            nucleus.log(" &c- "+entry.getModuleName()+" timed out after "+entry.getMillis()+"ms");
+        return report;
     }
 
+    private ModuleGraph getOrBuildModuleGraph(){
+        if (moduleGraph == null)
+            moduleGraph = new ModuleGraph(classModuleMap.values());
+        else
+            for (Module module : classModuleMap.values())
+                if (!moduleGraph.contains(module)) {
+                    moduleGraph = new ModuleGraph(classModuleMap.values());
+                    break;
+                }
+        return moduleGraph;
+    }
 
     public Module loadModuleClass(Class<? extends Module> moduleClass) throws InvalidModuleDeclarationException {
         Module module;
@@ -232,20 +650,51 @@ public class ModuleLoader {
         return enabledModules.contains(module);
     }
 
+    /**
+     * Enables the module, or makes it dormant if it's lazy.
+     * @see LazyActivation
+     */
+    private boolean startModule(Module module){
+        if (module.getSignature().lazy()) {
+            lazyActivation.makeDormant(module);
+            return true;
+        }
+        return enableModule(module);
+    }
+
+    /**
+     * @return Whether the module is lazy and waits for one of its triggers to be enabled.
+     */
+    public boolean isModuleDormant(Module module){
+        return lazyActivation.isDormant(module);
+    }
+
+    public LazyActivation getLazyActivation() {
+        return lazyActivation;
+    }
+
     public boolean enableModule(Module module){
-        try {
-            nucleus.log("&7Enabling "+module.getName()+"...");
+        nucleus.log("&7Enabling "+module.getName()+"...");
+        return completeEnable(module, prepareModule(module));
+    }
 
+    /**
+     * Checks the module's dependencies and starts its asynchronous preparation.
+     * @return A future that completes once the module is prepared, or completes exceptionally if it can't enable.
+     */
+    private CompletableFuture<Void> prepareModule(Module module){
+        try {
             // Check if required plugins are on the server
-            for (String requiredPlugin : module.getSignature().requiredPlugins()) {
-                if (!Bukkit.getPluginManager().isPluginEnabled(requiredPlugin)) {
-                    List<String> missingPlugins = new ArrayList<>();
-                    for (String s : module.getSignature().requiredPlugins()) {
-                        if (!Bukkit.getPluginManager().isPluginEnabled(s))
-                            missingPlugins.add(s);
-                    }
-                    throw new MissingPluginDependency(module.getSignature().name(), missingPlugins);
-                }
+            List<String> missingPlugins = getMissingPlugins(module);
+            if (!missingPlugins.isEmpty())
+                throw new MissingPluginDependency(module.getSignature().name(), missingPlugins);
+
+            // Lazy modules are enabled once something requires them
+            lazyActivation.wake(module);
+            for (String requiredModuleName : module.getSignature().requiredModules()) {
+                Module requiredModule = getModule(requiredModuleName);
+                if (requiredModule != null && lazyActivation.isDormant(requiredModule))
+                    lazyActivation.activate(requiredModule);
             }
 
             // Check if required modules are on the server
@@ -263,11 +712,41 @@ public class ModuleLoader {
                 }
             }
 
+            long prepareStart = System.nanoTime();
+            CompletableFuture<Void> preparation = module.onPrepareAsync(getLifecycleExecutor());
+            if (preparation == null)
+                preparation = CompletableFuture.completedFuture(null);
+            return preparation.whenComplete((result, throwable) -> lifecycleTimings.record(module, LifecycleTimings.Operation.PREPARE, System.nanoTime() - prepareStart));
+        }catch (Exception e){
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Waits for the module's preparation and enables it on the current thread.
+     */
+    private boolean completeEnable(Module module, CompletableFuture<Void> preparation){
+        try {
+            long timeout = getPrepareTimeoutMillis(module);
+            try {
+                preparation.get(timeout, TimeUnit.MILLISECONDS);
+            }catch (ExecutionException e){
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }catch (TimeoutException e){
+                preparation.cancel(true);
+                nucleus.log("&cModule '"+module.getName()+"' didn't finish preparing within "+timeout+"ms.");
+                throw e;
+            }
+
+            long enableStart = System.nanoTime();
             module.isEnabled = true;
             module.config.set("enabled", true);
             enabledModules.add(module);
             module.onEnable();
             module.saveConfig();
+            lifecycleTimings.record(module, LifecycleTimings.Operation.ENABLE, System.nanoTime() - enableStart);
             nucleus.log("&eSuccessfully &aenabled &emodule &a&l"+module.getName()+"&e.");
         }catch (Exception e){
             nucleus.log("&cAn error occurred while enabling module '"+module.getName()+"'");
@@ -287,6 +766,44 @@ public class ModuleLoader {
     }
 
     public boolean disableModule(Module module, boolean setDisabled){
+        if (lazyActivation.isDormant(module)) {
+            lazyActivation.forget(module);
+            if (setDisabled) {
+                module.config.set("enabled", false);
+                module.saveConfig();
+            }
+            nucleus.log("&eSuccessfully &cdisabled &emodule &a&l"+module.getName()+"&e.");
+            return true;
+        }
+        lazyActivation.forget(module);
+        long start = System.nanoTime();
+        CompletableFuture<Void> flush = stopModule(module, setDisabled);
+        if (flush == null)
+            return false;
+
+        long timeout = getShutdownTimeoutMillis(module);
+        try {
+            flush.get(timeout, TimeUnit.MILLISECONDS);
+        }catch (TimeoutException e){
+            nucleus.log("&cModule '"+module.getName()+"' didn't finish flushing within "+timeout+"ms, moving on.");
+        }catch (ExecutionException e){
+            nucleus.log("&cAn error occurred while flushing module '"+module.getName()+"'");
+            e.getCause().printStackTrace();
+            return false;
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        lifecycleTimings.record(module, LifecycleTimings.Operation.DISABLE, System.nanoTime() - start);
+        nucleus.log("&eSuccessfully &cdisabled &emodule &a&l"+module.getName()+"&e.");
+        return true;
+    }
+
+    /**
+     * Runs the main thread part of disabling a module and starts its flush.
+     * @return The module's flush, or null if disabling failed.
+     */
+    private CompletableFuture<Void> stopModule(Module module, boolean setDisabled){
         try {
             nucleus.log("&7Disabling "+module.getName()+"...");
             module.isEnabled = false;
@@ -294,26 +811,110 @@ public class ModuleLoader {
             module.unregisterAllCommandBranches();
             module.unregisterAllCommands();
             module.unregisterAllEvents();
+            module.cancelDatabaseOperations();
             module.onDisable();
+            module.cancelAllTasks();
+            module.clearCaches();
+            module.unregisterAllMetrics();
             if (setDisabled) {
                 module.config.set("enabled", false);
                 module.saveConfig();
             }
-            nucleus.log("&eSuccessfully &cdisabled &emodule &a&l"+module.getName()+"&e.");
+            module.flushConfig();
+            CompletableFuture<Void> sessionSaves = module.unregisterAllSessionData();
+            CompletableFuture<Void> databaseWrites = module.drainDatabaseWrites();
+            CompletableFuture<Void> flush = module.onFlushAsync(getLifecycleExecutor());
+            CompletableFuture<Void> executorShutdown = module.shutdownExecutor();
+            return flush == null ? CompletableFuture.allOf(sessionSaves, databaseWrites, executorShutdown) : CompletableFuture.allOf(flush, sessionSaves, databaseWrites, executorShutdown);
         }catch (Exception e){
             nucleus.log("&cAn error occurred while disabling module '"+module.getName()+"'");
             e.printStackTrace();
             module.config.set("enabled", false);
             module.saveConfig();
-            return false;
+            return null;
         }
+    }
 
-        return true;
+    /**
+     * @return How long the loader waits for the module's flush, either the module config's
+     * "shutdown-timeout-millis" or the loader-wide default.
+     */
+    public long getShutdownTimeoutMillis(Module module){
+        if (module.getConfig() != null && module.getConfig().isSet("shutdown-timeout-millis"))
+            return module.getConfig().getLong("shutdown-timeout-millis");
+        return shutdownTimeoutMillis;
+    }
+
+    /**
+     * @return How long the loader waits for the module's preparation before failing it, either the module config's
+     * "prepare-timeout-millis" or the loader-wide default.
+     */
+    public long getPrepareTimeoutMillis(Module module){
+        if (module.getConfig() != null && module.getConfig().isSet("prepare-timeout-millis"))
+            return module.getConfig().getLong("prepare-timeout-millis");
+        return prepareTimeoutMillis;
+    }
+
+    public long getPrepareTimeoutMillis() {
+        return prepareTimeoutMillis;
+    }
+
+    /**
+     * Sets how long the loader waits for a module's preparation by default.
+     */
+    public void setPrepareTimeoutMillis(long prepareTimeoutMillis) {
+        this.prepareTimeoutMillis = prepareTimeoutMillis;
+    }
+
+    /**
+     * @return How many milliseconds of the module's queued work may run per tick, either the module config's
+     * "tick-budget-millis" or the loader-wide default.
+     */
+    public double getTickBudgetMillis(Module module){
+        if (module.getConfig() != null && module.getConfig().isSet("tick-budget-millis"))
+            return module.getConfig().getDouble("tick-budget-millis");
+        return tickBudgetMillis;
+    }
+
+    public double getTickBudgetMillis() {
+        return tickBudgetMillis;
+    }
+
+    /**
+     * Sets how many milliseconds of a module's queued work may run per tick by default.
+     */
+    public void setTickBudgetMillis(double tickBudgetMillis) {
+        this.tickBudgetMillis = tickBudgetMillis;
+    }
+
+    public ExecutorSettings getExecutorSettings() {
+        return executorSettings;
+    }
+
+    /**
+     * Sets the settings module executors are created with.
+     */
+    public void setExecutorSettings(ExecutorSettings executorSettings) {
+        this.executorSettings = executorSettings;
+    }
+
+    public long getShutdownTimeoutMillis() {
+        return shutdownTimeoutMillis;
+    }
+
+    /**
+     * Sets how long the loader waits for a module's {@link Module#onFlushAsync(Executor)} by default.
+     */
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
     }
 
     public boolean reloadModule(Module module){
         try {
+            long start = System.nanoTime();
             module.onReload();
+            module.getMessages().reload();
+            lifecycleTimings.record(module, LifecycleTimings.Operation.RELOAD, System.nanoTime() - start);
         }catch (Exception e){
             nucleus.log("&cAn error occurred while reloading module '"+module.getName()+"'");
             e.printStackTrace();
@@ -367,6 +968,58 @@ public class ModuleLoader {
         return modulesFolder;
     }
 
+    /**
+     * @return Whether modules are enabled in waves with their preparation running concurrently.
+     */
+    public boolean isParallelEnabling() {
+        return parallelEnabling;
+    }
+
+    /**
+     * Sets whether {@link #initializeModulesState()} enables independent modules in waves, running their
+     * {@link Module#onPrepareAsync(Executor)} concurrently.
+     */
+    public void setParallelEnabling(boolean parallelEnabling) {
+        this.parallelEnabling = parallelEnabling;
+    }
+
+    /**
+     * @return The executor module preparation and flushing run on. It has a thread per processor when parallel
+     * enabling is on and {@value #SERIAL_LIFECYCLE_THREADS} threads otherwise, idle threads are released.
+     */
+    public synchronized Executor getLifecycleExecutor() {
+        if (lifecycleExecutor == null || lifecycleExecutor.isShutdown()) {
+            AtomicInteger threadCount = new AtomicInteger();
+            int threads = parallelEnabling ? Runtime.getRuntime().availableProcessors() : SERIAL_LIFECYCLE_THREADS;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "Nucleus-Lifecycle-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            lifecycleExecutor = executor;
+        }
+        return lifecycleExecutor;
+    }
+
+    /**
+     * @return The dependency graph of the loaded modules, or null if modules weren't initialized yet.
+     */
+    public ModuleGraph getModuleGraph() {
+        return moduleGraph;
+    }
+
+    /**
+     * @return Startup phase timings and the latest lifecycle timings of every module.
+     */
+    public LifecycleTimings getLifecycleTimings() {
+        return lifecycleTimings;
+    }
+
+    public ModuleIndex getModuleIndex() {
+        return moduleIndex;
+    }
+
     public static Set<Class<?>> getClassesInPackage(File jarFile, String packageName) {
         Set<Class<?>> classes = new HashSet<Class<?>>();
         try {
@@ -385,63 +1038,13 @@ public class ModuleLoader {
         return classes;
     }
 
-    private class PendingModuleProfile {
-        private Class<? extends Module> moduleClass;
-        private Signature signature;
-        private String lowerCaseName;
-        private String[] lowerCaseRequiredPlugins;
-        private String[] lowerCaseRequiredModules;
-        private String[] lowerCaseLoadAfterModules;
-        private boolean willNeverLoad = false;
-
-        public PendingModuleProfile(Class<? extends Module> moduleClass) {
-            this.moduleClass = moduleClass;
-            signature = moduleClass.getAnnotation(Signature.class);
-            lowerCaseName = signature.name().toLowerCase();
-
-            lowerCaseRequiredPlugins = new String[signature.requiredPlugins().length];
-            for (int i = 0; i < signature.requiredPlugins().length; i++)
-                lowerCaseRequiredPlugins[i] = signature.requiredPlugins()[i].toLowerCase();
-
-            lowerCaseRequiredModules = new String[signature.requiredModules().length];
-            for (int i = 0; i < signature.requiredModules().length; i++)
-                lowerCaseRequiredModules[i] = signature.requiredModules()[i].toLowerCase();
-
-            lowerCaseLoadAfterModules = new String[signature.enableAfterModule().length];
-            for (int i = 0; i < signature.enableAfterModule().length; i++)
-                lowerCaseLoadAfterModules[i] = signature.enableAfterModule()[i].toLowerCase();
-        }
-
-        public Class<? extends Module> getModuleClass() {
-            return moduleClass;
-        }
-
-        public Signature getSignature() {
-            return signature;
-        }
-
-        public String getLowerCaseName() {
-            return lowerCaseName;
-        }
-
-        public String[] getLowerCaseRequiredModules() {
-            return lowerCaseRequiredModules;
-        }
-
-        public String[] getLowerCaseRequiredPlugins() {
-            return lowerCaseRequiredPlugins;
-        }
-
-        public String[] getLowerCaseLoadAfterModules() {
-            return lowerCaseLoadAfterModules;
-        }
-
-        public boolean isWillNeverEnable() {
-            return willNeverLoad;
-        }
+    private static class UnloadedJar extends WeakReference<ModuleClassLoader> {
+        private final String jarName;
+        private final long unloadedAt = System.currentTimeMillis();
 
-        public void setWillNeverEnable(boolean willNeverLoad) {
-            this.willNeverLoad = willNeverLoad;
+        private UnloadedJar(ModuleClassLoader classLoader, ReferenceQueue<ModuleClassLoader> queue) {
+            super(classLoader, queue);
+            this.jarName = classLoader.getJarFile().getName();
         }
     }
 }
@@ -0,0 +1,83 @@
+package dev.splityosis.nucleuscore.module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link ModuleLoader#onDisable()}, with how long every module took to disable and flush.
+ */
+public class ShutdownReport {
+
+    private final List<Entry> entries = new ArrayList<>();
+    private long totalMillis;
+
+    void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    void setTotalMillis(long totalMillis) {
+        this.totalMillis = totalMillis;
+    }
+
+    /**
+     * @return An entry per disabled module, in the order they were disabled.
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return The entries of modules that didn't finish flushing within their deadline.
+     */
+    public List<Entry> getTimedOut() {
+        List<Entry> timedOut = new ArrayList<>();
+        for (Entry entry : entries)
+            if (entry.isTimedOut())
+                timedOut.add(entry);
+        return timedOut;
+    }
+
+    /**
+     * @return How long the whole shutdown took.
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public static class Entry {
+        private final String moduleName;
+        private final long millis;
+        private final boolean timedOut;
+        private final boolean failed;
+
+        Entry(String moduleName, long millis, boolean timedOut, boolean failed) {
+            this.moduleName = moduleName;
+            this.millis = millis;
+            this.timedOut = timedOut;
+            this.failed = failed;
+        }
+
+        public String getModuleName() {
+            return moduleName;
+        }
+
+        /**
+         * @return Time from the start of the module's disable until its flush completed or its deadline passed.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return Whether an exception was thrown while disabling or flushing the module.
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+}
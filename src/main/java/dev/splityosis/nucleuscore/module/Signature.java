@@ -1,5 +1,7 @@
 package dev.splityosis.nucleuscore.module;
 
+import org.bukkit.event.Event;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
@@ -12,4 +14,26 @@ public @interface Signature {
     String[] requiredPlugins() default {};
     String[] requiredModules() default {};
     String[] enableAfterModule() default {};
-}
\ No newline at end of file
+
+    /**
+     * Lazy modules aren't enabled on startup. They are enabled the first time one of their trigger commands is run or
+     * one of their trigger events is called, or when a module requiring them is enabled.
+     */
+    boolean lazy() default false;
+
+    /**
+     * Names and aliases of the commands that enable a lazy module.
+     */
+    String[] triggerCommands() default {};
+
+    /**
+     * Events that enable a lazy module. The event that enabled it is only passed on to the module's LOWEST priority
+     * handlers, handlers of higher priorities start with the event's next firing.
+     */
+    Class<? extends Event>[] triggerEvents() default {};
+
+    /**
+     * Seconds a lazy module may go unused before it's disabled until its next use, 0 keeps it enabled.
+     */
+    long idleTimeoutSeconds() default 0;
+}
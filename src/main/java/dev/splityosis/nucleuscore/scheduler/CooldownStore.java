@@ -0,0 +1,204 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Per-player cooldowns without boxing or timers. Entries live in open addressed primitive arrays keyed by the two
+ * halves of the UUID, an expired cooldown is just an entry with a past expiry. Expired entries are dropped when they
+ * are looked up, and a couple of slots are swept on every write, so cleanup scales with writes rather than with the
+ * amount of players. Times are monotonic, so changes to the system clock don't affect cooldowns.
+ */
+public class CooldownStore {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int SWEEP_SLOTS = 2;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private long[] expiries;
+    private int size;
+    private int sweepCursor;
+
+    public CooldownStore() {
+        allocate(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * Puts a player on cooldown, replacing any cooldown they're on.
+     */
+    public synchronized void set(UUID uuid, long durationMillis) {
+        long now = now();
+        sweep(now);
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), now + durationMillis);
+    }
+
+    /**
+     * Puts a player on cooldown unless they already are.
+     * @return True if the player wasn't on cooldown and now is.
+     */
+    public synchronized boolean tryAcquire(UUID uuid, long durationMillis) {
+        long now = now();
+        if (getExpiry(uuid, now) != EMPTY)
+            return false;
+        sweep(now);
+        put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), now + durationMillis);
+        return true;
+    }
+
+    public synchronized boolean isOnCooldown(UUID uuid) {
+        return getExpiry(uuid, now()) != EMPTY;
+    }
+
+    /**
+     * @return Milliseconds left on the player's cooldown, 0 if they're not on cooldown.
+     */
+    public synchronized long getRemainingMillis(UUID uuid) {
+        long now = now();
+        long expiry = getExpiry(uuid, now);
+        return expiry == EMPTY ? 0 : expiry - now;
+    }
+
+    /**
+     * Takes a player off cooldown.
+     * @return True if the player was on cooldown.
+     */
+    public synchronized boolean remove(UUID uuid) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index < 0)
+            return false;
+        boolean active = expiries[index] > now();
+        removeAt(index);
+        return active;
+    }
+
+    public synchronized void clear() {
+        allocate(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * Drops every expired entry.
+     */
+    public synchronized void cleanUp() {
+        long now = now();
+        for (int i = 0; i < expiries.length; i++) {
+            while (expiries[i] != EMPTY && expiries[i] <= now)
+                removeAt(i);
+        }
+        shrinkIfSparse();
+    }
+
+    /**
+     * @return Amount of stored entries, including expired ones that weren't dropped yet.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private long getExpiry(UUID uuid, long now) {
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (index < 0)
+            return EMPTY;
+        if (expiries[index] <= now) {
+            removeAt(index);
+            return EMPTY;
+        }
+        return expiries[index];
+    }
+
+    private int indexOf(long most, long least) {
+        int mask = expiries.length - 1;
+        for (int i = hash(most, least) & mask; expiries[i] != EMPTY; i = (i + 1) & mask) {
+            if (mostBits[i] == most && leastBits[i] == least)
+                return i;
+        }
+        return -1;
+    }
+
+    private void put(long most, long least, long expiry) {
+        if (expiry == EMPTY)
+            expiry++;
+        int mask = expiries.length - 1;
+        int i = hash(most, least) & mask;
+        for (; expiries[i] != EMPTY; i = (i + 1) & mask) {
+            if (mostBits[i] == most && leastBits[i] == least) {
+                expiries[i] = expiry;
+                return;
+            }
+        }
+        mostBits[i] = most;
+        leastBits[i] = least;
+        expiries[i] = expiry;
+        if (++size * 2 > expiries.length)
+            resize(expiries.length * 2);
+    }
+
+    /**
+     * Removes an entry and shifts back the entries after it, so lookups never need tombstones.
+     */
+    private void removeAt(int index) {
+        int mask = expiries.length - 1;
+        int hole = index;
+        for (int i = (index + 1) & mask; expiries[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(mostBits[i], leastBits[i]) & mask;
+            boolean stays = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (stays)
+                continue;
+            mostBits[hole] = mostBits[i];
+            leastBits[hole] = leastBits[i];
+            expiries[hole] = expiries[i];
+            hole = i;
+        }
+        expiries[hole] = EMPTY;
+        size--;
+    }
+
+    private void sweep(long now) {
+        for (int swept = 0; swept < SWEEP_SLOTS; swept++) {
+            sweepCursor = (sweepCursor + 1) & (expiries.length - 1);
+            if (expiries[sweepCursor] != EMPTY && expiries[sweepCursor] <= now)
+                removeAt(sweepCursor);
+        }
+    }
+
+    private void shrinkIfSparse() {
+        int capacity = expiries.length;
+        while (capacity > MINIMUM_CAPACITY && size * 8 < capacity)
+            capacity /= 2;
+        if (capacity != expiries.length)
+            resize(capacity);
+    }
+
+    private void resize(int capacity) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        long[] oldExpiries = expiries;
+        allocate(capacity);
+        for (int i = 0; i < oldExpiries.length; i++) {
+            if (oldExpiries[i] != EMPTY)
+                put(oldMost[i], oldLeast[i], oldExpiries[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostBits = new long[capacity];
+        leastBits = new long[capacity];
+        expiries = new long[capacity];
+        Arrays.fill(expiries, EMPTY);
+        size = 0;
+        sweepCursor = 0;
+    }
+
+    private static int hash(long most, long least) {
+        long hash = most * 0x9E3779B97F4A7C15L ^ least;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
@@ -0,0 +1,69 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Module executor settings, read from the "modules.executor" section of settings.yml. Values that are missing or
+ * negative fall back to the defaults.
+ */
+public class ExecutorSettings {
+
+    private int threads = 4;
+    private int queueCapacity = 1000;
+    private boolean virtualThreads = true;
+    private int virtualMaxConcurrency = 256;
+
+    private ExecutorSettings() {}
+
+    public static ExecutorSettings defaults() {
+        return new ExecutorSettings();
+    }
+
+    /**
+     * @param section The "modules.executor" section, may be null.
+     * @return The settings.
+     */
+    public static ExecutorSettings fromConfig(ConfigurationSection section) {
+        ExecutorSettings settings = defaults();
+        if (section == null)
+            return settings;
+        settings.threads = Math.max(1, get(section, "threads", settings.threads));
+        settings.queueCapacity = get(section, "queue-capacity", settings.queueCapacity);
+        settings.virtualThreads = section.getBoolean("virtual-threads", settings.virtualThreads);
+        settings.virtualMaxConcurrency = Math.max(1, get(section, "virtual-max-concurrency", settings.virtualMaxConcurrency));
+        return settings;
+    }
+
+    private static int get(ConfigurationSection section, String path, int def) {
+        int value = section.getInt(path, -1);
+        return value < 0 ? def : value;
+    }
+
+    /**
+     * @return Amount of platform threads of a module executor.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return Maximum amount of tasks waiting for a thread.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return Whether module executors use virtual threads when the JVM supports them.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return Maximum amount of tasks running at once on virtual threads.
+     */
+    public int getVirtualMaxConcurrency() {
+        return virtualMaxConcurrency;
+    }
+}
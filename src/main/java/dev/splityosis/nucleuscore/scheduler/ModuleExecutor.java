@@ -0,0 +1,204 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executor owned by a module, for work that shouldn't run on the main thread. At most a fixed amount of tasks
+ * run at once and a bounded amount waits for their turn, tasks submitted over that are rejected with a
+ * {@link RejectedExecutionException}. On Java 21 and newer every task gets its own virtual thread, so tasks blocking
+ * on I/O don't hold a platform thread while they wait.
+ */
+public class ModuleExecutor implements Executor {
+
+    private final String name;
+    private final boolean virtual;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean shutdown;
+
+    /**
+     * @param name The executor's name, its threads are named after it.
+     * @param settings The executor settings.
+     */
+    public ModuleExecutor(String name, ExecutorSettings settings) {
+        this(name, settings.getThreads(), settings.getQueueCapacity(), settings.isVirtualThreads() && VirtualThreads.isSupported(), settings.getVirtualMaxConcurrency());
+    }
+
+    /**
+     * @param threads Amount of platform threads, when not using virtual threads.
+     * @param queueCapacity Maximum amount of tasks waiting for their turn.
+     * @param virtual Whether to use virtual threads, platform threads are used if the JVM doesn't support them.
+     * @param virtualMaxConcurrency Maximum amount of tasks running at once on virtual threads.
+     */
+    public ModuleExecutor(String name, int threads, int queueCapacity, boolean virtual, int virtualMaxConcurrency) {
+        this.name = name;
+        ExecutorService virtualExecutor = virtual ? VirtualThreads.newThreadPerTaskExecutor(name + "-") : null;
+        this.virtual = virtualExecutor != null;
+        this.queueCapacity = queueCapacity;
+        if (this.virtual) {
+            this.maxConcurrency = virtualMaxConcurrency;
+            this.delegate = virtualExecutor;
+            this.permits = new Semaphore(virtualMaxConcurrency);
+        }
+        else {
+            this.maxConcurrency = threads;
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            this.delegate = executor;
+            this.permits = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            rejected.increment();
+            throw new RejectedExecutionException("Executor " + name + " is shut down");
+        }
+        if (admitted.incrementAndGet() > maxConcurrency + queueCapacity) {
+            admitted.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Executor " + name + " is full (" + maxConcurrency + " running, " + queueCapacity + " queued)");
+        }
+        try {
+            delegate.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            admitted.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            if (permits != null) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+                if (permits != null)
+                    permits.release();
+            }
+        } finally {
+            admitted.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return A future completed once the task ran.
+     * @throws RejectedExecutionException If the executor is full or shut down.
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, this);
+    }
+
+    /**
+     * @return A future completed with the supplier's result.
+     * @throws RejectedExecutionException If the executor is full or shut down.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, this);
+    }
+
+    /**
+     * Stops accepting tasks and lets the submitted ones finish, tasks still running after the timeout are interrupted.
+     * @param timeoutMillis How long to wait for submitted tasks.
+     * @param waiter Executor the wait runs on.
+     * @return A future completed once the executor terminated or was interrupted.
+     */
+    public CompletableFuture<Void> shutdown(long timeoutMillis, Executor waiter) {
+        shutdown = true;
+        delegate.shutdown();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (!delegate.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS))
+                    shutdownNow();
+            } catch (InterruptedException e) {
+                shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }, waiter);
+    }
+
+    /**
+     * Stops accepting tasks and interrupts the running ones.
+     */
+    public void shutdownNow() {
+        shutdown = true;
+        admitted.addAndGet(-delegate.shutdownNow().size());
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Whether tasks run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return Maximum amount of tasks running at once.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return Amount of tasks waiting for their turn.
+     */
+    public int getQueueSize() {
+        return Math.max(0, admitted.get() - active.get());
+    }
+
+    /**
+     * @return Amount of tasks running.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return Amount of tasks rejected because the executor was full or shut down.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,353 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import dev.splityosis.nucleuscore.metrics.LatencyHistogram;
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Schedules a module's tasks and cancels all of them when the module is disabled. Large jobs can be queued as
+ * {@link SlicedTask}s, which run on the main thread a few steps per tick within the module's tick budget, so a single
+ * module can't stall a tick. Large amounts of delayed actions should go through {@link #scheduleTimer(Runnable, long)}
+ * and per-player cooldowns through {@link #createCooldowns()} rather than through separate Bukkit tasks.
+ */
+public class ModuleScheduler {
+
+    private final Module module;
+    private final Plugin plugin;
+    private final Set<BukkitTask> tasks = ConcurrentHashMap.newKeySet();
+    private final Set<WheelTimer> timers = ConcurrentHashMap.newKeySet();
+    private final List<CooldownStore> cooldownStores = new CopyOnWriteArrayList<>();
+    private final Queue<QueuedWork> incomingWork = new ConcurrentLinkedQueue<>();
+    private final List<QueuedWork> work = new ArrayList<>();
+    private final AtomicInteger pendingWork = new AtomicInteger();
+    private volatile long tickBudgetNanos;
+    private BukkitTask workTask;
+
+    private final LongAdder scheduledTasks = new LongAdder();
+    private final LatencyHistogram taskTimings = new LatencyHistogram();
+    private final LatencyHistogram workTickTimings = new LatencyHistogram();
+    private final LongAdder workSteps = new LongAdder();
+    private final LongAdder completedWork = new LongAdder();
+    private final LongAdder overBudgetTicks = new LongAdder();
+
+    /**
+     * @param tickBudgetMillis How many milliseconds of queued work may run per tick.
+     */
+    public ModuleScheduler(Module module, Plugin plugin, double tickBudgetMillis) {
+        this.module = module;
+        this.plugin = plugin;
+        setTickBudgetMillis(tickBudgetMillis);
+    }
+
+    public BukkitTask runTask(Runnable task) {
+        return track(task, false, false, (scheduler, runnable) -> scheduler.runTask(plugin, runnable));
+    }
+
+    public BukkitTask runTaskLater(Runnable task, long delayTicks) {
+        return track(task, false, false, (scheduler, runnable) -> scheduler.runTaskLater(plugin, runnable, delayTicks));
+    }
+
+    public BukkitTask runTaskTimer(Runnable task, long delayTicks, long periodTicks) {
+        return track(task, true, false, (scheduler, runnable) -> scheduler.runTaskTimer(plugin, runnable, delayTicks, periodTicks));
+    }
+
+    public BukkitTask runTaskAsynchronously(Runnable task) {
+        return track(task, false, true, (scheduler, runnable) -> scheduler.runTaskAsynchronously(plugin, runnable));
+    }
+
+    public BukkitTask runTaskLaterAsynchronously(Runnable task, long delayTicks) {
+        return track(task, false, true, (scheduler, runnable) -> scheduler.runTaskLaterAsynchronously(plugin, runnable, delayTicks));
+    }
+
+    public BukkitTask runTaskTimerAsynchronously(Runnable task, long delayTicks, long periodTicks) {
+        return track(task, true, true, (scheduler, runnable) -> scheduler.runTaskTimerAsynchronously(plugin, runnable, delayTicks, periodTicks));
+    }
+
+    private BukkitTask track(Runnable task, boolean repeating, boolean async, TaskFactory factory) {
+        TrackedTask tracked = new TrackedTask(task, repeating, async);
+        BukkitTask bukkitTask = factory.schedule(Bukkit.getScheduler(), tracked);
+        scheduledTasks.increment();
+        tasks.removeIf(BukkitTask::isCancelled);
+        tasks.add(bukkitTask);
+        tracked.task = bukkitTask;
+        if (tracked.done)
+            tasks.remove(bukkitTask);
+        return bukkitTask;
+    }
+
+    /**
+     * Schedules a task on Nucleus' {@link TimingWheel}, which is far cheaper than a Bukkit task when a module keeps
+     * thousands of delayed actions.
+     * @param task The task, run on the main thread.
+     * @param delayTicks Ticks until it runs, at least 1.
+     * @return The timer, used to cancel it.
+     */
+    public WheelTimer scheduleTimer(Runnable task, long delayTicks) {
+        WheelTimer timer = module.getNucleus().getTimingWheel().schedule(task, delayTicks);
+        timers.add(timer);
+        timer.owner = this;
+        if (timer.isExpired() || timer.isCancelled())
+            timers.remove(timer);
+        return timer;
+    }
+
+    void untrack(WheelTimer timer) {
+        timers.remove(timer);
+    }
+
+    /**
+     * Creates a cooldown store owned by this module, it is cleared when the module is disabled.
+     */
+    public CooldownStore createCooldowns() {
+        CooldownStore cooldownStore = new CooldownStore();
+        cooldownStores.add(cooldownStore);
+        return cooldownStore;
+    }
+
+    /**
+     * Queues a job that runs on the main thread in steps, within the module's tick budget. At least one step runs
+     * every tick, so keep steps short.
+     * @return A future completed once the job is done, completed exceptionally if a step throws or the module is
+     * disabled first.
+     */
+    public CompletableFuture<Void> submit(SlicedTask task) {
+        QueuedWork queuedWork = new QueuedWork(task);
+        pendingWork.incrementAndGet();
+        incomingWork.add(queuedWork);
+        startWorkTask();
+        return queuedWork.future;
+    }
+
+    /**
+     * Queues an action for every item, a few items per tick within the module's tick budget.
+     * @see #submit(SlicedTask)
+     */
+    public <T> CompletableFuture<Void> submit(Iterable<T> items, Consumer<? super T> action) {
+        Iterator<T> iterator = items.iterator();
+        return submit(() -> {
+            if (iterator.hasNext())
+                action.accept(iterator.next());
+            return !iterator.hasNext();
+        });
+    }
+
+    private synchronized void startWorkTask() {
+        if (workTask != null || !plugin.isEnabled())
+            return;
+        workTask = Bukkit.getScheduler().runTaskTimer(plugin, this::runWork, 1, 1);
+    }
+
+    /**
+     * Runs queued work until the tick budget is used up, going over the jobs round robin.
+     */
+    private void runWork() {
+        QueuedWork incoming;
+        while ((incoming = incomingWork.poll()) != null)
+            work.add(incoming);
+
+        if (work.isEmpty()) {
+            synchronized (this) {
+                if (incomingWork.isEmpty()) {
+                    if (workTask != null)
+                        workTask.cancel();
+                    workTask = null;
+                }
+            }
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + tickBudgetNanos;
+        int index = 0;
+        do {
+            if (index >= work.size())
+                index = 0;
+            QueuedWork queuedWork = work.get(index);
+            boolean done;
+            try {
+                done = queuedWork.task.step();
+            } catch (Throwable throwable) {
+                queuedWork.future.completeExceptionally(throwable);
+                work.remove(index);
+                pendingWork.decrementAndGet();
+                continue;
+            } finally {
+                workSteps.increment();
+            }
+            if (done) {
+                work.remove(index);
+                pendingWork.decrementAndGet();
+                completedWork.increment();
+                queuedWork.future.complete(null);
+            }
+            else
+                index++;
+        } while (!work.isEmpty() && System.nanoTime() < deadline);
+
+        long elapsed = System.nanoTime() - start;
+        workTickTimings.record(elapsed);
+        if (elapsed > tickBudgetNanos)
+            overBudgetTicks.increment();
+    }
+
+    /**
+     * Cancels all of the module's tasks, timers and queued work and clears its cooldowns. This method is automatically
+     * called on disable.
+     */
+    public void cancelAll() {
+        for (BukkitTask task : tasks)
+            task.cancel();
+        tasks.clear();
+        for (WheelTimer timer : timers)
+            timer.cancel();
+        timers.clear();
+        for (CooldownStore cooldownStore : cooldownStores)
+            cooldownStore.clear();
+        cooldownStores.clear();
+
+        synchronized (this) {
+            if (workTask != null)
+                workTask.cancel();
+            workTask = null;
+        }
+        QueuedWork incoming;
+        while ((incoming = incomingWork.poll()) != null)
+            work.add(incoming);
+        for (QueuedWork queuedWork : work)
+            queuedWork.future.completeExceptionally(new CancellationException("Module '" + module.getName() + "' was disabled"));
+        pendingWork.addAndGet(-work.size());
+        work.clear();
+    }
+
+    public double getTickBudgetMillis() {
+        return tickBudgetNanos / 1_000_000D;
+    }
+
+    /**
+     * Sets how many milliseconds of queued work may run per tick.
+     */
+    public void setTickBudgetMillis(double tickBudgetMillis) {
+        if (tickBudgetMillis <= 0)
+            throw new IllegalArgumentException("Tick budget must be positive");
+        this.tickBudgetNanos = (long) (tickBudgetMillis * 1_000_000);
+    }
+
+    /**
+     * @return Amount of the module's tasks that are scheduled or running.
+     */
+    public int getActiveTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @return Amount of the module's timing wheel timers waiting to run.
+     */
+    public int getActiveTimerCount() {
+        return timers.size();
+    }
+
+    /**
+     * @return Amount of tasks the module scheduled so far.
+     */
+    public long getScheduledTaskCount() {
+        return scheduledTasks.sum();
+    }
+
+    /**
+     * @return Durations of the module's main thread task runs.
+     */
+    public LatencyHistogram getTaskTimings() {
+        return taskTimings;
+    }
+
+    /**
+     * @return Amount of queued jobs that aren't done yet, safe to read from any thread.
+     */
+    public int getPendingWorkCount() {
+        return pendingWork.get();
+    }
+
+    public long getCompletedWorkCount() {
+        return completedWork.sum();
+    }
+
+    public long getWorkStepCount() {
+        return workSteps.sum();
+    }
+
+    /**
+     * @return Time spent on queued work every tick there was any.
+     */
+    public LatencyHistogram getWorkTickTimings() {
+        return workTickTimings;
+    }
+
+    /**
+     * @return Amount of ticks a step ran past the tick budget.
+     */
+    public long getOverBudgetTickCount() {
+        return overBudgetTicks.sum();
+    }
+
+    public Module getModule() {
+        return module;
+    }
+
+    @FunctionalInterface
+    private interface TaskFactory {
+        BukkitTask schedule(BukkitScheduler scheduler, Runnable runnable);
+    }
+
+    private class TrackedTask implements Runnable {
+        private final Runnable runnable;
+        private final boolean repeating;
+        private final boolean async;
+        private volatile BukkitTask task;
+        private volatile boolean done;
+
+        private TrackedTask(Runnable runnable, boolean repeating, boolean async) {
+            this.runnable = runnable;
+            this.repeating = repeating;
+            this.async = async;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                if (!async)
+                    taskTimings.record(System.nanoTime() - start);
+                if (!repeating) {
+                    done = true;
+                    BukkitTask bukkitTask = task;
+                    if (bukkitTask != null)
+                        tasks.remove(bukkitTask);
+                }
+            }
+        }
+    }
+
+    private static class QueuedWork {
+        private final SlicedTask task;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private QueuedWork(SlicedTask task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+/**
+ * A job split into small steps, run by a {@link ModuleScheduler} a few steps per tick within the module's budget.
+ */
+@FunctionalInterface
+public interface SlicedTask {
+
+    /**
+     * Runs a single, short step of the job on the main thread.
+     * @return True once the job is done.
+     */
+    boolean step() throws Exception;
+}
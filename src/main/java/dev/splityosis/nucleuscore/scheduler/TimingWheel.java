@@ -0,0 +1,185 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hierarchical timing wheel driven by a single tick task. Timers live in one of 4 levels of 64 slots each, level n
+ * covering delays of up to 64^(n+1) ticks, and move down a level when their slot comes up. Scheduling and cancelling
+ * are O(1) and a tick only touches the timers that expire or move down, no matter how many timers are live.
+ * Timers run on the main thread, they may be scheduled and cancelled from any thread.
+ */
+public class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Plugin plugin;
+    private final WheelTimer[][] levels = new WheelTimer[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+    private BukkitTask tickTask;
+    private final LongAdder expirations = new LongAdder();
+
+    public TimingWheel(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Schedules a task.
+     * @param task The task, run on the main thread.
+     * @param delayTicks Ticks until it runs, at least 1.
+     * @return The timer, used to cancel it.
+     */
+    public WheelTimer schedule(Runnable task, long delayTicks) {
+        WheelTimer timer;
+        synchronized (this) {
+            timer = new WheelTimer(this, task, currentTick + Math.max(1, delayTicks));
+            insert(timer);
+            size++;
+        }
+        startTickTask();
+        return timer;
+    }
+
+    synchronized boolean cancel(WheelTimer timer) {
+        if (timer.slots == null)
+            return false;
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    private void insert(WheelTimer timer) {
+        long delay = timer.expiryTick - currentTick;
+        long placement = delay > MAX_DELAY ? currentTick + MAX_DELAY : Math.max(timer.expiryTick, currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && placement - currentTick >= 1L << (SLOT_BITS * (level + 1)))
+            level++;
+        WheelTimer[] slots = levels[level];
+        int slot = (int) (placement >>> (SLOT_BITS * level)) & SLOT_MASK;
+        timer.slots = slots;
+        timer.slot = slot;
+        timer.previous = null;
+        timer.next = slots[slot];
+        if (slots[slot] != null)
+            slots[slot].previous = timer;
+        slots[slot] = timer;
+    }
+
+    private static void unlink(WheelTimer timer) {
+        if (timer.previous != null)
+            timer.previous.next = timer.next;
+        else
+            timer.slots[timer.slot] = timer.next;
+        if (timer.next != null)
+            timer.next.previous = timer.previous;
+        timer.slots = null;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    private synchronized void startTickTask() {
+        if (tickTask != null || !plugin.isEnabled())
+            return;
+        tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Advances the wheel by one tick and runs the timers that expire. This is called every tick by the wheel's task.
+     */
+    public void tick() {
+        List<WheelTimer> expired = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+                    continue;
+                WheelTimer[] slots = levels[level];
+                int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                WheelTimer timer = slots[slot];
+                slots[slot] = null;
+                while (timer != null) {
+                    WheelTimer next = timer.next;
+                    insert(timer);
+                    timer = next;
+                }
+            }
+
+            WheelTimer[] slots = levels[0];
+            int slot = (int) currentTick & SLOT_MASK;
+            WheelTimer timer = slots[slot];
+            while (timer != null) {
+                WheelTimer next = timer.next;
+                unlink(timer);
+                if (timer.expiryTick <= currentTick) {
+                    size--;
+                    expired.add(timer);
+                }
+                else {
+                    // Delays over the wheel's range were clamped, the rest of the delay starts over from the top
+                    insert(timer);
+                }
+                timer = next;
+            }
+        }
+
+        for (WheelTimer timer : expired) {
+            expirations.increment();
+            try {
+                timer.expire();
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the tick task and drops every timer without running it.
+     */
+    public synchronized void shutdown() {
+        if (tickTask != null)
+            tickTask.cancel();
+        tickTask = null;
+        for (WheelTimer[] slots : levels) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                WheelTimer timer = slots[slot];
+                while (timer != null) {
+                    WheelTimer next = timer.next;
+                    timer.slots = null;
+                    timer.previous = null;
+                    timer.next = null;
+                    timer = next;
+                }
+                slots[slot] = null;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * @return Amount of timers waiting to run.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @return Amount of timers that ran so far.
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+}
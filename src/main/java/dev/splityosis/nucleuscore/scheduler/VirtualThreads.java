@@ -0,0 +1,71 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads from Java 8 code. The Java 21 API is looked up reflectively once, so the same class runs
+ * on every Java version and virtual threads are only used when the running JVM has them.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    private static final boolean SUPPORTED;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        boolean supported = false;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // Preview builds of virtual threads throw here unless previews are enabled
+            ofVirtual.invoke(null);
+            supported = true;
+        } catch (Throwable ignored) {
+            // Older JVM, module executors use platform threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        SUPPORTED = supported;
+    }
+
+    private VirtualThreads() {}
+
+    /**
+     * @return Whether the running JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task.
+     * @param namePrefix Prefix of the thread names, followed by a counter.
+     * @return The executor, or null if virtual threads aren't supported and platform threads should be used instead.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        if (!SUPPORTED)
+            return null;
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package dev.splityosis.nucleuscore.scheduler;
+
+/**
+ * A timer scheduled on a {@link TimingWheel}. It is a node of the wheel's slot list, so cancelling it is O(1).
+ */
+public class WheelTimer {
+
+    private final TimingWheel wheel;
+    private final Runnable task;
+    final long expiryTick;
+    ModuleScheduler owner;
+
+    WheelTimer previous;
+    WheelTimer next;
+    WheelTimer[] slots;
+    int slot = -1;
+    private volatile boolean cancelled;
+    private volatile boolean expired;
+
+    WheelTimer(TimingWheel wheel, Runnable task, long expiryTick) {
+        this.wheel = wheel;
+        this.task = task;
+        this.expiryTick = expiryTick;
+    }
+
+    /**
+     * Cancels the timer if it didn't run yet.
+     * @return False if the timer already ran or was cancelled.
+     */
+    public boolean cancel() {
+        if (!wheel.cancel(this))
+            return false;
+        cancelled = true;
+        if (owner != null)
+            owner.untrack(this);
+        return true;
+    }
+
+    void expire() {
+        expired = true;
+        if (owner != null)
+            owner.untrack(this);
+        task.run();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * @return The wheel tick the timer runs at.
+     */
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+}
@@ -0,0 +1,304 @@
+package dev.splityosis.nucleuscore.session;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.NucleusUtil;
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Keeps module data of online players in memory for their session. Data of every registered {@link SessionData} is
+ * loaded in parallel while the player is logging in, off the main thread, so nothing is loaded during join. Changed
+ * data is saved in batches: periodically, and once per tick for all players that quit during it.
+ */
+public class PlayerSessionService implements Listener {
+
+    private final Nucleus nucleus;
+    private final List<SessionData<?>> registrations = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Integer> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> pendingLogins = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Void>> quitSaves = new ConcurrentHashMap<>();
+    private final Set<UUID> quitting = new LinkedHashSet<>();
+    private boolean quitFlushScheduled = false;
+    private long preloadTimeoutMillis = 5000;
+    private String preloadFailedMessage = "&cYour data couldn't be loaded, please try again.";
+    private BukkitTask saveTask;
+
+    public PlayerSessionService(Nucleus nucleus) {
+        this.nucleus = nucleus;
+    }
+
+    /**
+     * Registers the service's listeners and starts the periodic save.
+     * @param saveIntervalTicks Ticks between periodic saves, 0 or less to only save on quit.
+     */
+    public void start(long saveIntervalTicks) {
+        JavaPlugin plugin = nucleus.getPlugin();
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (Player player : Bukkit.getOnlinePlayers())
+            sessions.merge(player.getUniqueId(), 1, Integer::sum);
+        if (saveIntervalTicks > 0)
+            saveTask = Bukkit.getScheduler().runTaskTimer(plugin, this::saveAll, saveIntervalTicks, saveIntervalTicks);
+    }
+
+    /**
+     * Stops the periodic save. Module data is saved when the modules are disabled, this only saves what's left.
+     */
+    public void shutdown() {
+        HandlerList.unregisterAll(this);
+        if (saveTask != null)
+            saveTask.cancel();
+        saveAll();
+    }
+
+    /**
+     * Registers module data. Players that are already online get their data loaded in the background.
+     * This method is called by {@link Module#registerSessionData(SessionDataHandler)}.
+     */
+    public <T> SessionData<T> register(Module module, SessionDataHandler<T> handler) {
+        SessionData<T> sessionData = new SessionData<>(module, handler);
+        registrations.add(sessionData);
+        for (UUID uuid : sessions.keySet()) {
+            load(sessionData, uuid).whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    nucleus.log("&cAn error occurred while loading data of module '"+module.getName()+"' for "+uuid);
+                    throwable.printStackTrace();
+                }
+            });
+        }
+        return sessionData;
+    }
+
+    /**
+     * Saves all changed data and forgets it. This method is called by {@link Module#unregisterAllSessionData()}.
+     * @return A future that completes once the data is saved.
+     */
+    public CompletableFuture<Void> unregister(SessionData<?> sessionData) {
+        registrations.remove(sessionData);
+        return saveDirty(sessionData, null).whenComplete((result, throwable) -> sessionData.clear());
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED)
+            return;
+        UUID uuid = event.getUniqueId();
+        // Counted per connection, the player may relog while their old connection is still online
+        sessions.merge(uuid, 1, Integer::sum);
+
+        // A quick rejoin must not load data that is still being saved from the last session, data that is still
+        // loaded is kept rather than loaded again
+        CompletableFuture<Void> quitSave = quitSaves.get(uuid);
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (SessionData<?> sessionData : registrations)
+            loads.add(quitSave == null ? load(sessionData, uuid) : quitSave.handle((result, throwable) -> null).thenCompose(ignored -> load(sessionData, uuid)));
+
+        try {
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).get(preloadTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            nucleus.log("&cCouldn't load the session data of "+event.getName()+", disallowing their login.");
+            if (!(e instanceof TimeoutException))
+                e.printStackTrace();
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, NucleusUtil.colorize(preloadFailedMessage));
+            discard(uuid);
+            return;
+        }
+        pendingLogins.merge(uuid, 1, Integer::sum);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginResult(AsyncPlayerPreLoginEvent event) {
+        UUID uuid = event.getUniqueId();
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED && release(pendingLogins, uuid) >= 0)
+            discard(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        if (release(pendingLogins, uuid) >= 0 && event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+            discard(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        // Only the player's last connection ends the session
+        if (release(sessions, uuid) != 0)
+            return;
+        synchronized (quitting) {
+            quitting.add(uuid);
+            if (quitFlushScheduled)
+                return;
+            quitFlushScheduled = true;
+        }
+        JavaPlugin plugin = nucleus.getPlugin();
+        if (plugin.isEnabled())
+            Bukkit.getScheduler().runTask(plugin, this::saveQuitting);
+        else
+            saveQuitting();
+    }
+
+    /**
+     * Saves the changed data of every session now.
+     * @return A future that completes once everything is saved.
+     */
+    public CompletableFuture<Void> saveAll() {
+        saveQuitting();
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (SessionData<?> sessionData : registrations)
+            saves.add(saveDirty(sessionData, null));
+        return CompletableFuture.allOf(saves.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Saves the data of everyone who quit since the last call in a single batch per module, then forgets it.
+     */
+    private void saveQuitting() {
+        List<UUID> uuids;
+        synchronized (quitting) {
+            quitFlushScheduled = false;
+            if (quitting.isEmpty())
+                return;
+            uuids = new ArrayList<>(quitting);
+            quitting.clear();
+        }
+
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (SessionData<?> sessionData : registrations)
+            saves.add(saveDirty(sessionData, uuids));
+        CompletableFuture<Void> future = CompletableFuture.allOf(saves.toArray(new CompletableFuture[0]));
+        for (UUID uuid : uuids)
+            quitSaves.put(uuid, future);
+        future.whenComplete((result, throwable) -> {
+            for (UUID uuid : uuids)
+                quitSaves.remove(uuid, future);
+        });
+    }
+
+    private <T> CompletableFuture<Void> load(SessionData<T> sessionData, UUID uuid) {
+        // Data that is still loaded may have changes that weren't saved yet
+        if (sessionData.isLoaded(uuid))
+            return CompletableFuture.completedFuture(null);
+        return sessionData.getModule().getDatabase()
+                .supplyRead(connection -> sessionData.getHandler().load(connection, uuid))
+                .thenAccept(value -> {
+                    // The player may have left again while their data was loading
+                    if (sessions.containsKey(uuid))
+                        sessionData.putIfAbsent(uuid, value);
+                });
+    }
+
+    /**
+     * Saves the dirty data of the given players, or of everyone if null.
+     */
+    private <T> CompletableFuture<Void> saveDirty(SessionData<T> sessionData, Collection<UUID> uuids) {
+        return save(sessionData, uuids == null ? sessionData.takeDirty() : sessionData.takeDirty(uuids));
+    }
+
+    private <T> CompletableFuture<Void> save(SessionData<T> sessionData, Map<UUID, T> data) {
+        if (data.isEmpty()) {
+            forgetOffline(sessionData);
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = sessionData.getModule().getDatabase().supply(connection -> {
+            sessionData.getHandler().save(connection, data);
+            return null;
+        });
+        return future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                // Kept dirty, the next save retries it, even for players that already quit
+                nucleus.log("&cAn error occurred while saving "+data.size()+" players' data of module '"+sessionData.getModule().getName()+"'");
+                throwable.printStackTrace();
+                sessionData.restoreDirty(data.keySet());
+            }
+            forgetOffline(sessionData);
+        });
+    }
+
+    /**
+     * Forgets saved data of players that no longer have a session.
+     */
+    private void forgetOffline(SessionData<?> sessionData) {
+        for (UUID uuid : new ArrayList<>(sessionData.getLoadedPlayers())) {
+            if (!sessions.containsKey(uuid))
+                sessionData.removeIfClean(uuid);
+        }
+    }
+
+    /**
+     * Ends the session of a connection that didn't make it in. The data is only forgotten if no other connection of
+     * the player is online, and only if it's clean, so data that wasn't saved yet survives a failed login.
+     */
+    private void discard(UUID uuid) {
+        if (release(sessions, uuid) != 0)
+            return;
+        for (SessionData<?> sessionData : registrations)
+            sessionData.removeIfClean(uuid);
+    }
+
+    /**
+     * Decrements a per connection count.
+     * @return The remaining count, or -1 if there was none.
+     */
+    private static int release(Map<UUID, Integer> counts, UUID uuid) {
+        int[] remaining = {-1};
+        counts.computeIfPresent(uuid, (key, count) -> {
+            remaining[0] = count - 1;
+            return count > 1 ? count - 1 : null;
+        });
+        return remaining[0];
+    }
+
+    /**
+     * @return Whether the player has a session, which is the case from their login until they quit.
+     */
+    public boolean hasSession(UUID uuid) {
+        return sessions.containsKey(uuid);
+    }
+
+    public boolean hasSession(Player player) {
+        return hasSession(player.getUniqueId());
+    }
+
+    /**
+     * @return An unmodifiable list of all registered module data.
+     */
+    public List<SessionData<?>> getRegistrations() {
+        return Collections.unmodifiableList(registrations);
+    }
+
+    public long getPreloadTimeoutMillis() {
+        return preloadTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a login waits for its data before the player is disallowed from joining.
+     */
+    public void setPreloadTimeoutMillis(long preloadTimeoutMillis) {
+        this.preloadTimeoutMillis = preloadTimeoutMillis;
+    }
+
+    public String getPreloadFailedMessage() {
+        return preloadFailedMessage;
+    }
+
+    /**
+     * Sets the kick message of players whose data couldn't be loaded.
+     */
+    public void setPreloadFailedMessage(String preloadFailedMessage) {
+        this.preloadFailedMessage = preloadFailedMessage;
+    }
+}
@@ -0,0 +1,141 @@
+package dev.splityosis.nucleuscore.session;
+
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A module's data of online players, preloaded before they join and kept in memory for their session. Create one
+ * through {@link Module#registerSessionData(SessionDataHandler)}.
+ */
+public class SessionData<T> {
+
+    private final Module module;
+    private final SessionDataHandler<T> handler;
+    private final ConcurrentHashMap<UUID, T> values = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    SessionData(Module module, SessionDataHandler<T> handler) {
+        this.module = module;
+        this.handler = handler;
+    }
+
+    /**
+     * Gets a player's data. Data of players that joined is always loaded, unless the module was enabled after they
+     * joined and the data is still loading.
+     * @param uuid The player's uuid.
+     * @return The data, or null if it isn't loaded.
+     */
+    public T get(UUID uuid) {
+        return values.get(uuid);
+    }
+
+    public T get(Player player) {
+        return get(player.getUniqueId());
+    }
+
+    /**
+     * Replaces a player's data, it will be saved with the next batch.
+     */
+    public void set(UUID uuid, T value) {
+        if (value == null)
+            throw new IllegalArgumentException("Session data can't be null");
+        values.put(uuid, value);
+        dirty.add(uuid);
+    }
+
+    /**
+     * Marks a player's data as changed after it was modified in place, it will be saved with the next batch.
+     */
+    public void markDirty(UUID uuid) {
+        if (values.containsKey(uuid))
+            dirty.add(uuid);
+    }
+
+    public void markDirty(Player player) {
+        markDirty(player.getUniqueId());
+    }
+
+    public boolean isLoaded(UUID uuid) {
+        return values.containsKey(uuid);
+    }
+
+    /**
+     * @return Amount of loaded players.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return The uuids of all players whose data is loaded.
+     */
+    public Set<UUID> getLoadedPlayers() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    public Module getModule() {
+        return module;
+    }
+
+    public SessionDataHandler<T> getHandler() {
+        return handler;
+    }
+
+    void putIfAbsent(UUID uuid, T value) {
+        values.putIfAbsent(uuid, value);
+    }
+
+    /**
+     * Forgets a player's data unless it changed again in the meantime.
+     */
+    void removeIfClean(UUID uuid) {
+        if (!dirty.contains(uuid))
+            values.remove(uuid);
+    }
+
+    void remove(UUID uuid) {
+        values.remove(uuid);
+        dirty.remove(uuid);
+    }
+
+    void clear() {
+        values.clear();
+        dirty.clear();
+    }
+
+    /**
+     * Takes the dirty data of the given players, they are no longer dirty afterwards.
+     */
+    Map<UUID, T> takeDirty(Collection<UUID> uuids) {
+        Map<UUID, T> snapshot = new LinkedHashMap<>();
+        for (UUID uuid : uuids) {
+            // Removing before reading the value means changes made while saving mark it dirty again
+            if (!dirty.remove(uuid))
+                continue;
+            T value = values.get(uuid);
+            if (value != null)
+                snapshot.put(uuid, value);
+        }
+        return snapshot;
+    }
+
+    Map<UUID, T> takeDirty() {
+        return takeDirty(new ArrayList<>(dirty));
+    }
+
+    void restoreDirty(Collection<UUID> uuids) {
+        for (UUID uuid : uuids) {
+            if (values.containsKey(uuid))
+                dirty.add(uuid);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package dev.splityosis.nucleuscore.session;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Loads and saves a module's data of player sessions. Both methods run off the main thread.
+ */
+public interface SessionDataHandler<T> {
+
+    /**
+     * Loads a player's data while they are logging in, using a read connection.
+     * @param connection The connection.
+     * @param uuid The player's uuid.
+     * @return The player's data, never null. Return default data for players that have none.
+     */
+    T load(Connection connection, UUID uuid) throws SQLException;
+
+    /**
+     * Saves the data of several players at once, using the writer connection. Use a JDBC batch where possible.
+     * @param connection The connection.
+     * @param data The changed data by player uuid.
+     */
+    void save(Connection connection, Map<UUID, T> data) throws SQLException;
+}
@@ -0,0 +1,176 @@
+package dev.splityosis.nucleuscore.storage;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Write-behind persistence for yaml configs. Saving only marks a config dirty, dirty configs are serialized once per
+ * tick on the main thread and written by a background thread using a temp file that is atomically renamed over the
+ * original. Repeated saves of the same file are coalesced into a single write.
+ */
+public class ConfigPersistenceService {
+
+    private final Nucleus nucleus;
+    private final Map<File, FileConfiguration> dirtyConfigs = new LinkedHashMap<>();
+    private final ConcurrentHashMap<File, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+    private boolean serializeScheduled = false;
+
+    public ConfigPersistenceService(Nucleus nucleus) {
+        this.nucleus = nucleus;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nucleus-ConfigWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Marks a config as dirty, it will be written to the file shortly.
+     * @param file The file the config is saved to.
+     * @param config The config.
+     */
+    public void markDirty(File file, FileConfiguration config) {
+        synchronized (this) {
+            dirtyConfigs.put(file, config);
+            if (serializeScheduled)
+                return;
+            serializeScheduled = true;
+        }
+
+        JavaPlugin plugin = nucleus.getPlugin();
+        if (plugin != null && plugin.isEnabled())
+            Bukkit.getScheduler().runTask(plugin, this::serializeDirty);
+        else
+            serializeDirty();
+    }
+
+    /**
+     * Serializes the config of the file now if it's dirty and queues it to be written.
+     * @param file The file the config is saved to.
+     * @return A future that completes once the file is written.
+     */
+    public CompletableFuture<Void> flush(File file) {
+        FileConfiguration config;
+        synchronized (this) {
+            config = dirtyConfigs.remove(file);
+        }
+        if (config != null)
+            return enqueueWrite(file, config.saveToString());
+        PendingWrite pendingWrite = pendingWrites.get(file);
+        return pendingWrite == null ? CompletableFuture.completedFuture(null) : pendingWrite.future;
+    }
+
+    /**
+     * Serializes every dirty config now and queues them to be written.
+     * @return A future that completes once all of them are written.
+     */
+    public CompletableFuture<Void> flushAll() {
+        serializeDirty();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (PendingWrite pendingWrite : pendingWrites.values())
+            futures.add(pendingWrite.future);
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Flushes every dirty config and stops the writer thread once everything is written.
+     * @param timeoutMillis How long to wait for pending writes.
+     */
+    public void shutdown(long timeoutMillis) {
+        flushAll();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS))
+                nucleus.log("&cSome configs couldn't be saved within "+timeoutMillis+"ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serializeDirty() {
+        Map<File, FileConfiguration> toSerialize;
+        synchronized (this) {
+            toSerialize = new LinkedHashMap<>(dirtyConfigs);
+            dirtyConfigs.clear();
+            serializeScheduled = false;
+        }
+        for (Map.Entry<File, FileConfiguration> entry : toSerialize.entrySet())
+            enqueueWrite(entry.getKey(), entry.getValue().saveToString());
+    }
+
+    private CompletableFuture<Void> enqueueWrite(File file, String data) {
+        boolean[] created = new boolean[1];
+        PendingWrite pendingWrite = pendingWrites.compute(file, (f, existing) -> {
+            if (existing != null) {
+                existing.data = data;
+                return existing;
+            }
+            created[0] = true;
+            return new PendingWrite(data);
+        });
+
+        if (created[0]) {
+            try {
+                writer.execute(() -> {
+                    // Removing before reading the data means later saves start a new write instead of being lost
+                    PendingWrite write = pendingWrites.remove(file);
+                    try {
+                        writeAtomically(file, write.data);
+                        write.future.complete(null);
+                    } catch (IOException e) {
+                        nucleus.log("&cAn error occurred while saving '"+file.getPath()+"'");
+                        e.printStackTrace();
+                        write.future.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Writer is already shut down, write on the calling thread rather than losing data
+                pendingWrites.remove(file);
+                try {
+                    writeAtomically(file, pendingWrite.data);
+                    pendingWrite.future.complete(null);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    pendingWrite.future.completeExceptionally(ex);
+                }
+            }
+        }
+        return pendingWrite.future;
+    }
+
+    private static void writeAtomically(File file, String data) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+            parent.mkdirs();
+
+        File tempFile = new File(parent, file.getName() + ".tmp");
+        try (Writer fileWriter = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+            fileWriter.write(data);
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static class PendingWrite {
+        private volatile String data;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingWrite(String data) {
+            this.data = data;
+        }
+    }
+}
@@ -9,6 +9,28 @@ public interface DatabaseConnectionManager {
 
     boolean isLocal();
 
+    DatabaseType getDatabaseType();
+
     Connection getConnection() throws SQLException;
 
+    /**
+     * Gets the connection Nucleus' own writes go through, which may be a single writer connection shared by every
+     * thread in line.
+     */
+    Connection getWriteConnection() throws SQLException;
+
+    /**
+     * Gets a connection that is only used for reading, which may come from a different pool than writes.
+     */
+    Connection getReadConnection() throws SQLException;
+
+    /**
+     * @return Whether all writes go through a single connection, in which case writes should be queued on a single thread.
+     */
+    boolean isSingleWriter();
+
+    int getMaximumPoolSize();
+
+    DatabasePoolMetrics getPoolMetrics();
+
 }
@@ -0,0 +1,137 @@
+package dev.splityosis.nucleuscore.storage;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor for database work. It has as many threads as the connection pool has connections, so threads
+ * never queue up inside the pool, and a bounded queue so a stalled database can't pile up work forever. With a single
+ * writer connection writes get their own thread, so they wait in line there instead of taking threads from reads.
+ */
+public class DatabaseExecutor {
+
+    private final Nucleus nucleus;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor writeExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Executor mainThreadExecutor;
+
+    /**
+     * @param threads Amount of threads, typically the size of the connection pool.
+     * @param singleWriter Whether writes get a dedicated single thread, for databases with a single writer connection.
+     * @param queueCapacity Maximum amount of operations waiting for a thread.
+     */
+    public DatabaseExecutor(Nucleus nucleus, int threads, boolean singleWriter, int queueCapacity) {
+        this.nucleus = nucleus;
+        this.executor = createExecutor("Nucleus-DB-", threads, queueCapacity);
+        this.writeExecutor = singleWriter ? createExecutor("Nucleus-DB-Writer-", 1, queueCapacity) : null;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nucleus-DB-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mainThreadExecutor = runnable -> {
+            JavaPlugin plugin = nucleus.getPlugin();
+            if (Bukkit.isPrimaryThread() || !plugin.isEnabled())
+                runnable.run();
+            else
+                Bukkit.getScheduler().runTask(plugin, runnable);
+        };
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadPrefix, int threads, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    /**
+     * Submits database work that only reads.
+     * @throws RejectedExecutionException If the queue is full or the executor was shut down.
+     */
+    public Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Submits database work that writes. With a single writer connection writes are queued on their own thread, so
+     * they never hold up reads while waiting for the writer.
+     * @throws RejectedExecutionException If the queue is full or the executor was shut down.
+     */
+    public Future<?> submitWrite(Runnable task) {
+        return writeExecutor == null ? executor.submit(task) : writeExecutor.submit(task);
+    }
+
+    /**
+     * Runs a task periodically on the database scheduler thread. The task should only hand work off to
+     * {@link #submit(Runnable)} rather than do database work itself.
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long delayMillis, long periodMillis) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                throwable.printStackTrace();
+            }
+        }, delayMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return An executor that runs tasks on the Bukkit main thread, directly if already on it.
+     */
+    public Executor getMainThreadExecutor() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * @return Amount of operations waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size() + (writeExecutor == null ? 0 : writeExecutor.getQueue().size());
+    }
+
+    /**
+     * @return Amount of threads currently running operations.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount() + (writeExecutor == null ? 0 : writeExecutor.getActiveCount());
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize() + (writeExecutor == null ? 0 : 1);
+    }
+
+    /**
+     * Stops accepting work and waits for the work already submitted.
+     * @param timeoutMillis How long to wait before interrupting what's left.
+     */
+    public void shutdown(long timeoutMillis) {
+        scheduler.shutdownNow();
+        // Writes are drained first, they may still be flushing module data
+        if (writeExecutor != null)
+            shutdown(writeExecutor, timeoutMillis);
+        shutdown(executor, timeoutMillis);
+    }
+
+    private void shutdown(ThreadPoolExecutor threadPoolExecutor, long timeoutMillis) {
+        threadPoolExecutor.shutdown();
+        try {
+            if (!threadPoolExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                nucleus.log("&cDatabase operations didn't finish within "+timeoutMillis+"ms, interrupting them.");
+                threadPoolExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            threadPoolExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dev.splityosis.nucleuscore.storage;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool state and connection wait times, recorded through HikariCP's metrics tracker.
+ */
+public class DatabasePoolMetrics implements MetricsTrackerFactory, IMetricsTracker {
+
+    private volatile PoolStats poolStats;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder totalUsageMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquisitions.increment();
+        totalWaitNanos.add(elapsedAcquiredNanos);
+        maxWaitNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        totalUsageMillis.add(elapsedBorrowedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    public int getActiveConnections() {
+        return poolStats == null ? 0 : poolStats.getActiveConnections();
+    }
+
+    public int getIdleConnections() {
+        return poolStats == null ? 0 : poolStats.getIdleConnections();
+    }
+
+    public int getTotalConnections() {
+        return poolStats == null ? 0 : poolStats.getTotalConnections();
+    }
+
+    /**
+     * @return Amount of threads waiting for a connection.
+     */
+    public int getPendingThreads() {
+        return poolStats == null ? 0 : poolStats.getPendingThreads();
+    }
+
+    public int getMaxConnections() {
+        return poolStats == null ? 0 : poolStats.getMaxConnections();
+    }
+
+    /**
+     * @return Amount of connections handed out since the pool started.
+     */
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return Average time a connection is held before it's returned to the pool.
+     */
+    public double getAverageUsageMillis() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0 : totalUsageMillis.sum() / (double) count;
+    }
+
+    /**
+     * @return Amount of times a thread gave up waiting for a connection.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+}
@@ -0,0 +1,102 @@
+package dev.splityosis.nucleuscore.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Connection pool settings, read from the "database.pool" section of settings.yml. Values that are missing or
+ * negative fall back to defaults tuned for the database type.
+ */
+public class DatabasePoolSettings {
+
+    private int maximumPoolSize;
+    private int minimumIdle;
+    private long connectionTimeoutMillis;
+    private long idleTimeoutMillis;
+    private long maxLifetimeMillis;
+    private long leakDetectionThresholdMillis;
+
+    private DatabasePoolSettings() {}
+
+    /**
+     * Local file databases only benefit from a few connections since the file is the bottleneck, remote databases get a
+     * fixed size pool of 10 as HikariCP recommends.
+     * @return The default settings of the database type.
+     */
+    public static DatabasePoolSettings defaults(DatabaseType databaseType) {
+        DatabasePoolSettings settings = new DatabasePoolSettings();
+        if (databaseType.isLocal()) {
+            settings.maximumPoolSize = 4;
+            settings.minimumIdle = 1;
+            settings.connectionTimeoutMillis = 10000;
+        }
+        else {
+            settings.maximumPoolSize = 10;
+            settings.minimumIdle = 10;
+            settings.connectionTimeoutMillis = 30000;
+        }
+        settings.idleTimeoutMillis = 600000;
+        settings.maxLifetimeMillis = 1800000;
+        settings.leakDetectionThresholdMillis = 0;
+        return settings;
+    }
+
+    /**
+     * @param section The "database.pool" section, may be null.
+     * @param databaseType The database type, used for the defaults.
+     * @return The settings.
+     */
+    public static DatabasePoolSettings fromConfig(ConfigurationSection section, DatabaseType databaseType) {
+        DatabasePoolSettings settings = defaults(databaseType);
+        if (section == null)
+            return settings;
+        settings.maximumPoolSize = (int) get(section, "maximum-pool-size", settings.maximumPoolSize);
+        settings.minimumIdle = (int) Math.min(get(section, "minimum-idle", settings.minimumIdle), settings.maximumPoolSize);
+        settings.connectionTimeoutMillis = get(section, "connection-timeout-millis", settings.connectionTimeoutMillis);
+        settings.idleTimeoutMillis = get(section, "idle-timeout-millis", settings.idleTimeoutMillis);
+        settings.maxLifetimeMillis = get(section, "max-lifetime-millis", settings.maxLifetimeMillis);
+        settings.leakDetectionThresholdMillis = get(section, "leak-detection-threshold-millis", settings.leakDetectionThresholdMillis);
+        return settings;
+    }
+
+    private static long get(ConfigurationSection section, String path, long def) {
+        long value = section.getLong(path, -1);
+        return value < 0 ? def : value;
+    }
+
+    /**
+     * Applies the settings to a pool config.
+     */
+    public void apply(HikariConfig config) {
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeoutMillis);
+        config.setIdleTimeout(idleTimeoutMillis);
+        config.setMaxLifetime(maxLifetimeMillis);
+        config.setLeakDetectionThreshold(leakDetectionThresholdMillis);
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+}
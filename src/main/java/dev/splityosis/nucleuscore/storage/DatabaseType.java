@@ -0,0 +1,57 @@
+package dev.splityosis.nucleuscore.storage;
+
+import dev.splityosis.nucleuscore.exceptions.UnsupportedDatabaseType;
+
+/**
+ * The database types Nucleus can connect to.
+ */
+public enum DatabaseType {
+
+    SQLITE("sqlite", true, null),
+    H2("h2", true, null),
+    MYSQL("mysql", false, null),
+    MARIADB("mariadb", false, MYSQL);
+
+    private final String jdbcName;
+    private final boolean local;
+    private final DatabaseType fallbackDialect;
+
+    DatabaseType(String jdbcName, boolean local, DatabaseType fallbackDialect) {
+        this.jdbcName = jdbcName;
+        this.local = local;
+        this.fallbackDialect = fallbackDialect;
+    }
+
+    /**
+     * @return The name used in jdbc urls, e.g. "mysql".
+     */
+    public String getJdbcName() {
+        return jdbcName;
+    }
+
+    /**
+     * @return Whether this is a local, file based database.
+     */
+    public boolean isLocal() {
+        return local;
+    }
+
+    /**
+     * @return The dialect whose SQL this database also understands, or null.
+     */
+    public DatabaseType getFallbackDialect() {
+        return fallbackDialect;
+    }
+
+    /**
+     * Gets a database type by its name, case-insensitive.
+     * @throws UnsupportedDatabaseType If no such type is supported.
+     */
+    public static DatabaseType fromName(String name) throws UnsupportedDatabaseType {
+        if (name != null)
+            for (DatabaseType type : values())
+                if (type.jdbcName.equalsIgnoreCase(name))
+                    return type;
+        throw new UnsupportedDatabaseType(String.valueOf(name));
+    }
+}
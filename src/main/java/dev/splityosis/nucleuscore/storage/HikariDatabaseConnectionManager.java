@@ -1,36 +1,35 @@
 package dev.splityosis.nucleuscore.storage;
 
 
+import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import dev.splityosis.nucleuscore.Nucleus;
 import dev.splityosis.nucleuscore.exceptions.UnsupportedDatabaseType;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Arrays;
 
 public class HikariDatabaseConnectionManager implements DatabaseConnectionManager{
 
     private Nucleus nucleus;
-    private String databaseType;
+    private DatabaseType databaseType;
     private boolean local;
     private String databaseAddress;
     private String databaseName;
     private String username;
     private String password;
     private HikariDataSource hikariDataSource;
+    private DatabasePoolSettings poolSettings;
+    private final DatabasePoolMetrics poolMetrics = new DatabasePoolMetrics();
 
     public HikariDatabaseConnectionManager(Nucleus nucleus, String databaseType, String databaseAddress, String databaseName, String username, String password) throws UnsupportedDatabaseType {
         this.nucleus = nucleus;
-        if (databaseType == null)
-            throw new UnsupportedDatabaseType("null");
-        this.databaseType = databaseType.toLowerCase();
-        if (Arrays.asList("sqlite", "h2").contains(databaseType.toLowerCase())) {
+        this.databaseType = DatabaseType.fromName(databaseType);
+        this.poolSettings = DatabasePoolSettings.defaults(this.databaseType);
+        if (this.databaseType.isLocal()) {
             local = true;
             return;
         }
-        if (!Arrays.asList("mysql", "mariadb").contains(databaseType.toLowerCase()))
-            throw new UnsupportedDatabaseType(databaseType);
         local = false;
         this.databaseAddress = databaseAddress;
         this.databaseName = databaseName;
@@ -47,7 +46,7 @@ public class HikariDatabaseConnectionManager implements DatabaseConnectionManage
             throw new RuntimeException(e);
         }
 
-        StringBuilder url = new StringBuilder("jdbc:").append(databaseType).append(":");  // jdbc:MySql
+        StringBuilder url = new StringBuilder("jdbc:").append(databaseType.getJdbcName()).append(":");  // jdbc:MySql
         hikariDataSource = new HikariDataSource();
 
         if (local) {
@@ -60,21 +59,93 @@ public class HikariDatabaseConnectionManager implements DatabaseConnectionManage
             hikariDataSource.setUsername(username);
             hikariDataSource.setPassword(password);
         }
-        try {
-            getConnection();
+        hikariDataSource.setPoolName("Nucleus-Pool");
+        poolSettings.apply(hikariDataSource);
+        hikariDataSource.setMetricsTrackerFactory(poolMetrics);
+        configureStatementCache(hikariDataSource, databaseType);
+        try (Connection connection = getConnection()) {
+            // Fail fast if the database can't be reached
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         nucleus.log("&7Database URL: " +url.toString());
     }
 
+    /**
+     * Enables the driver's prepared statement cache, so statements prepared again on any pooled connection
+     * skip parsing. SQLite has no driver level cache.
+     */
+    static void configureStatementCache(HikariConfig config, DatabaseType databaseType) {
+        switch (databaseType) {
+            case MYSQL:
+                config.addDataSourceProperty("cachePrepStmts", "true");
+                config.addDataSourceProperty("prepStmtCacheSize", "250");
+                config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+                config.addDataSourceProperty("useServerPrepStmts", "true");
+                config.addDataSourceProperty("rewriteBatchedStatements", "true");
+                break;
+            case MARIADB:
+                config.addDataSourceProperty("cachePrepStmts", "true");
+                config.addDataSourceProperty("prepStmtCacheSize", "250");
+                config.addDataSourceProperty("useServerPrepStmts", "true");
+                config.addDataSourceProperty("useBulkStmts", "true");
+                break;
+            case H2:
+                config.addDataSourceProperty("QUERY_CACHE_SIZE", "64");
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public boolean isLocal() {
         return local;
     }
 
+    @Override
+    public DatabaseType getDatabaseType() {
+        return databaseType;
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         return hikariDataSource.getConnection();
     }
+
+    @Override
+    public Connection getWriteConnection() throws SQLException {
+        return getConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        return getConnection();
+    }
+
+    @Override
+    public boolean isSingleWriter() {
+        return false;
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return hikariDataSource.getMaximumPoolSize();
+    }
+
+    @Override
+    public DatabasePoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+
+    public DatabasePoolSettings getPoolSettings() {
+        return poolSettings;
+    }
+
+    /**
+     * Sets the pool settings, must be called before {@link #setup()}.
+     */
+    public void setPoolSettings(DatabasePoolSettings poolSettings) {
+        this.poolSettings = poolSettings;
+    }
 }
@@ -0,0 +1,149 @@
+package dev.splityosis.nucleuscore.storage;
+
+import com.zaxxer.hikari.HikariDataSource;
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.exceptions.UnsupportedDatabaseType;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection manager for local file databases (SQLite and H2). Writes made through {@link ModuleDatabase} and write
+ * behind queues go through a single writer connection, threads that want to write wait for it in line instead of
+ * failing with busy/lock errors. Reads and connections handed out directly through {@link #getConnection()} are
+ * served by a separate pool, so code holding a connection while opening another doesn't wait on the writer. SQLite
+ * runs in WAL mode so readers never block the writer.
+ */
+public class LocalDatabaseConnectionManager implements DatabaseConnectionManager {
+
+    private final Nucleus nucleus;
+    private final DatabaseType databaseType;
+    private DatabasePoolSettings poolSettings;
+    private HikariDataSource writeDataSource;
+    private HikariDataSource pooledDataSource;
+    private final DatabasePoolMetrics writePoolMetrics = new DatabasePoolMetrics();
+    private final DatabasePoolMetrics pooledPoolMetrics = new DatabasePoolMetrics();
+
+    public LocalDatabaseConnectionManager(Nucleus nucleus, DatabaseType databaseType) throws UnsupportedDatabaseType {
+        if (!databaseType.isLocal())
+            throw new UnsupportedDatabaseType(databaseType.getJdbcName());
+        this.nucleus = nucleus;
+        this.databaseType = databaseType;
+        this.poolSettings = DatabasePoolSettings.defaults(databaseType);
+    }
+
+    @Override
+    public void setup() {
+        String url = "jdbc:" + databaseType.getJdbcName() + ":" + nucleus.getLocalDatabaseFile().getAbsolutePath();
+
+        // The writer is opened first so the database file and its WAL exist before the pooled connections open
+        writeDataSource = new HikariDataSource();
+        writeDataSource.setJdbcUrl(url);
+        writeDataSource.setPoolName("Nucleus-Writer");
+        poolSettings.apply(writeDataSource);
+        writeDataSource.setMaximumPoolSize(1);
+        writeDataSource.setMinimumIdle(1);
+        writeDataSource.setMetricsTrackerFactory(writePoolMetrics);
+        HikariDatabaseConnectionManager.configureStatementCache(writeDataSource, databaseType);
+        if (databaseType == DatabaseType.SQLITE) {
+            writeDataSource.addDataSourceProperty("journal_mode", "WAL");
+            writeDataSource.addDataSourceProperty("synchronous", "NORMAL");
+            configureSqliteConnection(writeDataSource);
+        }
+        try (Connection connection = writeDataSource.getConnection()) {
+            // Fail fast if the database can't be opened
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        // Not read-only, modules may write through connections they get from getConnection()
+        pooledDataSource = new HikariDataSource();
+        pooledDataSource.setJdbcUrl(url);
+        pooledDataSource.setPoolName("Nucleus-Pool");
+        poolSettings.apply(pooledDataSource);
+        pooledDataSource.setMetricsTrackerFactory(pooledPoolMetrics);
+        HikariDatabaseConnectionManager.configureStatementCache(pooledDataSource, databaseType);
+        if (databaseType == DatabaseType.SQLITE)
+            configureSqliteConnection(pooledDataSource);
+
+        nucleus.log("&7Database URL: " + url + " &8(single writer, " + poolSettings.getMaximumPoolSize() + " pooled connections)");
+    }
+
+    private void configureSqliteConnection(HikariDataSource dataSource) {
+        dataSource.addDataSourceProperty("busy_timeout", String.valueOf(poolSettings.getConnectionTimeoutMillis()));
+        dataSource.addDataSourceProperty("temp_store", "MEMORY");
+        dataSource.addDataSourceProperty("cache_size", "-16000");
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    @Override
+    public DatabaseType getDatabaseType() {
+        return databaseType;
+    }
+
+    /**
+     * Gets a pooled connection. Writes through it don't wait in line for the writer, concurrent writes wait for
+     * SQLite's busy timeout instead.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pooledDataSource.getConnection();
+    }
+
+    /**
+     * Gets the writer connection, waiting in line while another thread holds it. Close it as soon as possible.
+     */
+    @Override
+    public Connection getWriteConnection() throws SQLException {
+        return writeDataSource.getConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        return pooledDataSource.getConnection();
+    }
+
+    @Override
+    public boolean isSingleWriter() {
+        return true;
+    }
+
+    /**
+     * @return The size of the pool serving reads and {@link #getConnection()}.
+     */
+    @Override
+    public int getMaximumPoolSize() {
+        return pooledDataSource.getMaximumPoolSize();
+    }
+
+    /**
+     * @return The metrics of the pool serving reads and {@link #getConnection()}.
+     */
+    @Override
+    public DatabasePoolMetrics getPoolMetrics() {
+        return pooledPoolMetrics;
+    }
+
+    /**
+     * @return The metrics of the writer, its pending threads are the writes waiting in line.
+     */
+    public DatabasePoolMetrics getWritePoolMetrics() {
+        return writePoolMetrics;
+    }
+
+    public DatabasePoolSettings getPoolSettings() {
+        return poolSettings;
+    }
+
+    /**
+     * Sets the pool settings, must be called before {@link #setup()}. The maximum pool size applies to the pool serving
+     * reads and {@link #getConnection()}.
+     */
+    public void setPoolSettings(DatabasePoolSettings poolSettings) {
+        this.poolSettings = poolSettings;
+    }
+}
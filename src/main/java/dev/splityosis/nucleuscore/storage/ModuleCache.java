@@ -0,0 +1,344 @@
+package dev.splityosis.nucleuscore.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache owned by a module. Misses are loaded off the main thread through the module's
+ * {@link ModuleDatabase}, concurrent misses of the same key share a single load. The cache is bounded by size (least
+ * recently used entries are evicted first) and optionally by time since write and time since last access. Writes are
+ * either written through or queued on a {@link WriteBehindQueue}. Create one through
+ * {@link dev.splityosis.nucleuscore.module.Module#createCache(CacheLoader)}, it is cleared when the module is disabled.
+ */
+public class ModuleCache<K, V> {
+
+    private final ModuleDatabase database;
+    private final CacheLoader<K, V> loader;
+
+    private final Object lock = new Object();
+    // Access ordered, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private int maximumSize = 10000;
+    private volatile long expireAfterWriteMillis = -1;
+    private volatile long expireAfterAccessMillis = -1;
+    private volatile CacheWriter<K, V> writer;
+    private volatile WriteBehindQueue<K, V> writeBehindQueue;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ModuleCache(ModuleDatabase database, CacheLoader<K, V> loader) {
+        this.database = database;
+        this.loader = loader;
+    }
+
+    /**
+     * Sets the maximum amount of entries, the least recently used entries are evicted past it. Defaults to 10000.
+     */
+    public ModuleCache<K, V> maximumSize(int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive");
+        synchronized (lock) {
+            this.maximumSize = maximumSize;
+            evictExcess();
+        }
+        return this;
+    }
+
+    /**
+     * Expires entries a fixed time after they were loaded or put.
+     * @param millis The time to live, -1 to never expire.
+     */
+    public ModuleCache<K, V> expireAfterWrite(long millis) {
+        this.expireAfterWriteMillis = millis;
+        return this;
+    }
+
+    /**
+     * Expires entries that weren't read or written for a while.
+     * @param millis The idle time, -1 to never expire.
+     */
+    public ModuleCache<K, V> expireAfterAccess(long millis) {
+        this.expireAfterAccessMillis = millis;
+        return this;
+    }
+
+    /**
+     * Writes every {@link #put(Object, Object)} to the database before its future completes.
+     * @param writer Writes an entry with the writer connection.
+     */
+    public ModuleCache<K, V> writeThrough(CacheWriter<K, V> writer) {
+        this.writer = writer;
+        this.writeBehindQueue = null;
+        return this;
+    }
+
+    /**
+     * Queues every {@link #put(Object, Object)} on a write-behind queue owned by the module.
+     * @param sql The statement every entry is written with.
+     * @param binder Binds an entry to the statement.
+     */
+    public ModuleCache<K, V> writeBehind(String sql, WriteBehindQueue.EntryBinder<K, V> binder) {
+        return writeBehind(database.createWriteBehindQueue(sql, binder));
+    }
+
+    /**
+     * Queues every {@link #put(Object, Object)} on the given write-behind queue.
+     */
+    public ModuleCache<K, V> writeBehind(WriteBehindQueue<K, V> writeBehindQueue) {
+        this.writeBehindQueue = writeBehindQueue;
+        this.writer = null;
+        return this;
+    }
+
+    /**
+     * Gets a value, loading it if it isn't cached. Loads run off the main thread and concurrent loads of the same key
+     * are shared.
+     * @param key The key.
+     * @return A future completed with the value, which may be null if the loader found nothing.
+     */
+    public CompletableFuture<V> get(K key) {
+        synchronized (lock) {
+            Entry<V> entry = getEntry(key, System.currentTimeMillis());
+            if (entry != null) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(entry.value);
+            }
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<V> existing = loading.get(key);
+        if (existing != null)
+            return existing;
+        CompletableFuture<V> future = new CompletableFuture<>();
+        existing = loading.putIfAbsent(key, future);
+        if (existing != null)
+            return existing;
+
+        database.supplyRead(connection -> loader.load(connection, key)).whenComplete((value, throwable) -> {
+            // A put or invalidate while loading removes the load, its result is stale and isn't cached then
+            if (loading.remove(key, future) && throwable == null) {
+                synchronized (lock) {
+                    store(key, value);
+                }
+            }
+            if (throwable != null) {
+                loadFailures.incrementAndGet();
+                future.completeExceptionally(throwable);
+            }
+            else
+                future.complete(value);
+        });
+        return future;
+    }
+
+    /**
+     * Gets a value only if it's cached, never loads. Safe to call on the main thread.
+     * @param key The key.
+     * @return The value, or null if it isn't cached.
+     */
+    public V getIfPresent(K key) {
+        synchronized (lock) {
+            Entry<V> entry = getEntry(key, System.currentTimeMillis());
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Caches a value and writes it using the cache's write mode. Without a write mode the value is only cached.
+     * @param key The key.
+     * @param value The value.
+     * @return A future that completes once the value is written (write-through) or queued (write-behind).
+     */
+    public CompletableFuture<Void> put(K key, V value) {
+        loading.remove(key);
+        synchronized (lock) {
+            store(key, value);
+        }
+
+        CacheWriter<K, V> cacheWriter = writer;
+        WriteBehindQueue<K, V> queue = writeBehindQueue;
+        if (cacheWriter != null) {
+            return database.supply(connection -> {
+                cacheWriter.write(connection, key, value);
+                return null;
+            });
+        }
+        if (queue != null && !queue.offer(key, value)) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new RejectedExecutionException("The cache's write-behind queue is full or closed"));
+            return future;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Removes a cached value without writing anything.
+     */
+    public void invalidate(K key) {
+        loading.remove(key);
+        synchronized (lock) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes every cached value without writing anything. This method is automatically called when the owning module
+     * is disabled.
+     */
+    public void invalidateAll() {
+        loading.clear();
+        synchronized (lock) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Removes every expired entry now. Expired entries are otherwise removed when they are accessed or when the cache
+     * needs room.
+     */
+    public void cleanUp() {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (isExpired(iterator.next(), now)) {
+                    iterator.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private Entry<V> getEntry(K key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (isExpired(entry, now)) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            return null;
+        }
+        entry.accessTime = now;
+        return entry;
+    }
+
+    private void store(K key, V value) {
+        long now = System.currentTimeMillis();
+        entries.put(key, new Entry<>(value, now));
+        // Idle entries sit at the head, so expired ones are usually found without walking the whole map
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (!isExpired(iterator.next(), now))
+                break;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+        evictExcess();
+    }
+
+    private void evictExcess() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (entries.size() > maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        if (expireAfterWriteMillis >= 0 && now - entry.writeTime >= expireAfterWriteMillis)
+            return true;
+        return expireAfterAccessMillis >= 0 && now - entry.accessTime >= expireAfterAccessMillis;
+    }
+
+    /**
+     * @return Amount of cached entries, including expired ones that weren't removed yet.
+     */
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The ratio of lookups that were cached, between 0 and 1.
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 1 : (double) hitCount / total;
+    }
+
+    public long getLoadFailureCount() {
+        return loadFailures.get();
+    }
+
+    /**
+     * @return Amount of entries removed because they expired or the cache was full.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public WriteBehindQueue<K, V> getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long writeTime;
+        private long accessTime;
+
+        private Entry(V value, long now) {
+            this.value = value;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    /**
+     * Loads a value that isn't cached, using a read connection.
+     */
+    @FunctionalInterface
+    public interface CacheLoader<K, V> {
+
+        V load(Connection connection, K key) throws SQLException;
+    }
+
+    /**
+     * Writes a value put in the cache, using the writer connection.
+     */
+    @FunctionalInterface
+    public interface CacheWriter<K, V> {
+
+        void write(Connection connection, K key, V value) throws SQLException;
+    }
+}
@@ -0,0 +1,243 @@
+package dev.splityosis.nucleuscore.storage;
+
+import dev.splityosis.nucleuscore.module.Module;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Asynchronous database access owned by a module. Every operation runs on the {@link DatabaseExecutor} and returns a
+ * {@link CompletableFuture}, operations that are still pending when the module is disabled are cancelled.
+ */
+public class ModuleDatabase {
+
+    private final Module module;
+    private final DatabaseConnectionManager connectionManager;
+    private final DatabaseExecutor executor;
+    private final Map<CompletableFuture<?>, Operation> inFlight = new ConcurrentHashMap<>();
+    private final List<WriteBehindQueue<?, ?>> writeBehindQueues = new CopyOnWriteArrayList<>();
+    private final QueryRegistry queries;
+
+    public ModuleDatabase(Module module, DatabaseConnectionManager connectionManager, DatabaseExecutor executor) {
+        this.module = module;
+        this.connectionManager = connectionManager;
+        this.executor = executor;
+        this.queries = new QueryRegistry(connectionManager.getDatabaseType());
+    }
+
+    /**
+     * Runs a function with a pooled connection off the main thread. The connection is closed once the function returns.
+     * The function may write, so like {@link #update(String, StatementBinder)} it is never interrupted once it started,
+     * even when the module is disabled.
+     * @param function The function.
+     * @return A future completed with the function's result.
+     */
+    public <T> CompletableFuture<T> supply(SqlFunction<Connection, T> function) {
+        return submit(function, false, true);
+    }
+
+    /**
+     * Runs a function with a pooled connection that is only used for reading, off the main thread. With a local
+     * database this connection doesn't come from the single writer and never waits for writes.
+     * @param function The function.
+     * @return A future completed with the function's result.
+     */
+    public <T> CompletableFuture<T> supplyRead(SqlFunction<Connection, T> function) {
+        return submit(function, true, false);
+    }
+
+    /**
+     * Runs a query off the main thread.
+     * @param sql The query.
+     * @param binder Binds the query's parameters.
+     * @param mapper Maps the result set.
+     * @return A future completed with the mapped result.
+     */
+    public <T> CompletableFuture<T> query(String sql, StatementBinder binder, ResultSetMapper<T> mapper) {
+        return submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return mapper.map(resultSet);
+                }
+            }
+        }, true, false);
+    }
+
+    /**
+     * Runs an update off the main thread. Updates that already started are never interrupted, even when the module
+     * is disabled.
+     * @param sql The update statement.
+     * @param binder Binds the statement's parameters.
+     * @return A future completed with the amount of affected rows.
+     */
+    public CompletableFuture<Integer> update(String sql, StatementBinder binder) {
+        return submit(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                return statement.executeUpdate();
+            }
+        }, false, true);
+    }
+
+    /**
+     * Runs a query registered in {@link #getQueries()} off the main thread.
+     * @see #query(String, StatementBinder, ResultSetMapper)
+     */
+    public <T> CompletableFuture<T> queryNamed(String name, StatementBinder binder, ResultSetMapper<T> mapper) {
+        return query(queries.getSql(name), binder, mapper);
+    }
+
+    /**
+     * Runs an update registered in {@link #getQueries()} off the main thread.
+     * @see #update(String, StatementBinder)
+     */
+    public CompletableFuture<Integer> updateNamed(String name, StatementBinder binder) {
+        return update(queries.getSql(name), binder);
+    }
+
+    /**
+     * @return The module's named queries, resolved for the active database type.
+     */
+    public QueryRegistry getQueries() {
+        return queries;
+    }
+
+    /**
+     * Creates a write-behind queue with a batch size of 100, room for 10000 pending writes and a flush every second.
+     * @see #createWriteBehindQueue(String, WriteBehindQueue.EntryBinder, int, int, long)
+     */
+    public <K, V> WriteBehindQueue<K, V> createWriteBehindQueue(String sql, WriteBehindQueue.EntryBinder<K, V> binder) {
+        return createWriteBehindQueue(sql, binder, 100, 10000, 1000);
+    }
+
+    /**
+     * Creates a write-behind queue owned by this module, it is drained when the module is disabled.
+     * @param sql The statement every queued entry is written with.
+     * @param binder Binds an entry to the statement.
+     * @param batchSize Amount of pending writes that triggers a flush, also the JDBC batch size.
+     * @param capacity Maximum amount of pending writes before new keys are rejected.
+     * @param flushIntervalMillis How often pending writes are flushed regardless of the batch size.
+     * @return The queue.
+     */
+    public <K, V> WriteBehindQueue<K, V> createWriteBehindQueue(String sql, WriteBehindQueue.EntryBinder<K, V> binder, int batchSize, int capacity, long flushIntervalMillis) {
+        WriteBehindQueue<K, V> queue = new WriteBehindQueue<>(module.getNucleus(), connectionManager, executor, sql, binder, batchSize, capacity, flushIntervalMillis);
+        writeBehindQueues.add(queue);
+        return queue;
+    }
+
+    /**
+     * @return An unmodifiable list of the module's open write-behind queues.
+     */
+    public List<WriteBehindQueue<?, ?>> getWriteBehindQueues() {
+        return Collections.unmodifiableList(writeBehindQueues);
+    }
+
+    /**
+     * Closes and drains every write-behind queue of the module. This method is automatically called on disable.
+     * @return A future that completes once every queue is drained.
+     */
+    public CompletableFuture<Void> drainWriteBehindQueues() {
+        List<CompletableFuture<Void>> drains = new ArrayList<>();
+        for (WriteBehindQueue<?, ?> queue : writeBehindQueues)
+            drains.add(queue.close());
+        writeBehindQueues.clear();
+        return CompletableFuture.allOf(drains.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Returns a future that is completed on the main thread once the given future completes, so callbacks
+     * attached to it can safely use the Bukkit API.
+     * @param future The future.
+     * @return The main thread future.
+     */
+    public <T> CompletableFuture<T> sync(CompletableFuture<T> future) {
+        CompletableFuture<T> syncFuture = new CompletableFuture<>();
+        future.whenComplete((result, throwable) -> executor.getMainThreadExecutor().execute(() -> {
+            if (throwable != null)
+                syncFuture.completeExceptionally(throwable);
+            else
+                syncFuture.complete(result);
+        }));
+        return syncFuture;
+    }
+
+    /**
+     * @return An executor that runs tasks on the Bukkit main thread, for use with the *Async methods of futures.
+     */
+    public Executor getMainThreadExecutor() {
+        return executor.getMainThreadExecutor();
+    }
+
+    /**
+     * Cancels every pending operation. Queries that are running get interrupted, running writes are left to finish
+     * but their futures are cancelled. This method is automatically called on disable.
+     */
+    public void cancelAll() {
+        for (Map.Entry<CompletableFuture<?>, Operation> entry : inFlight.entrySet()) {
+            entry.getKey().cancel(false);
+            entry.getValue().task.cancel(entry.getValue().interruptible);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * @return Amount of operations that didn't complete yet.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public Module getModule() {
+        return module;
+    }
+
+    public DatabaseConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    private <T> CompletableFuture<T> submit(SqlFunction<Connection, T> function, boolean interruptible, boolean write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            if (future.isDone())
+                return;
+            try (Connection connection = write ? connectionManager.getWriteConnection() : connectionManager.getReadConnection()) {
+                future.complete(function.apply(connection));
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        };
+        Future<?> task;
+        try {
+            task = write ? executor.submitWrite(runnable) : executor.submit(runnable);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        inFlight.put(future, new Operation(task, interruptible));
+        future.whenComplete((result, throwable) -> inFlight.remove(future));
+        return future;
+    }
+
+    private static class Operation {
+        private final Future<?> task;
+        private final boolean interruptible;
+
+        private Operation(Future<?> task, boolean interruptible) {
+            this.task = task;
+            this.interruptible = interruptible;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package dev.splityosis.nucleuscore.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named SQL statements of a module, declared once per dialect. Statements are resolved for the active database type
+ * when registered, so looking one up is a single map access.
+ */
+public class QueryRegistry {
+
+    private final DatabaseType databaseType;
+    private final Map<String, Declaration> declarations = new ConcurrentHashMap<>();
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    public QueryRegistry(DatabaseType databaseType) {
+        this.databaseType = databaseType;
+    }
+
+    /**
+     * Registers SQL used for every database type that has no dialect specific SQL.
+     * @param name The query's name.
+     * @param sql The SQL.
+     * @return This registry.
+     */
+    public QueryRegistry register(String name, String sql) {
+        return register(name, null, sql);
+    }
+
+    /**
+     * Registers SQL for a specific dialect, replacing any previous SQL of that name and dialect.
+     * @param name The query's name.
+     * @param dialect The database type the SQL is for, null for every database type.
+     * @param sql The SQL.
+     * @return This registry.
+     */
+    public synchronized QueryRegistry register(String name, DatabaseType dialect, String sql) {
+        Declaration declaration = declarations.computeIfAbsent(name, n -> new Declaration());
+        if (dialect == null)
+            declaration.defaultSql = sql;
+        else
+            declaration.dialects.put(dialect, sql);
+
+        String resolvedSql = declaration.resolve(databaseType);
+        if (resolvedSql != null)
+            resolved.put(name, resolvedSql);
+        return this;
+    }
+
+    /**
+     * @return The SQL of the query for the active database type.
+     * @throws IllegalArgumentException If no SQL is registered under the name for the active database type.
+     */
+    public String getSql(String name) {
+        String sql = resolved.get(name);
+        if (sql == null)
+            throw new IllegalArgumentException("No query named '"+name+"' is registered for "+databaseType);
+        return sql;
+    }
+
+    public boolean isRegistered(String name) {
+        return resolved.containsKey(name);
+    }
+
+    /**
+     * Prepares a registered query, ready to be bound. The driver caches the parsed statement, so preparing the same
+     * query again on any pooled connection is cheap.
+     * @param connection The connection to prepare it on.
+     * @param name The query's name.
+     * @return The prepared statement.
+     */
+    public PreparedStatement prepare(Connection connection, String name) throws SQLException {
+        return connection.prepareStatement(getSql(name));
+    }
+
+    public DatabaseType getDatabaseType() {
+        return databaseType;
+    }
+
+    private static class Declaration {
+        private final Map<DatabaseType, String> dialects = new EnumMap<>(DatabaseType.class);
+        private String defaultSql;
+
+        private String resolve(DatabaseType databaseType) {
+            for (DatabaseType type = databaseType; type != null; type = type.getFallbackDialect())
+                if (dialects.containsKey(type))
+                    return dialects.get(type);
+            return defaultSql;
+        }
+    }
+}
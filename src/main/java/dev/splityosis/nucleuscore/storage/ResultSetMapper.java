@@ -0,0 +1,13 @@
+package dev.splityosis.nucleuscore.storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps a query's result set to a value.
+ */
+@FunctionalInterface
+public interface ResultSetMapper<T> {
+
+    T map(ResultSet resultSet) throws SQLException;
+}
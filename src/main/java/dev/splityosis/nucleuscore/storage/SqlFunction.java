@@ -0,0 +1,12 @@
+package dev.splityosis.nucleuscore.storage;
+
+import java.sql.SQLException;
+
+/**
+ * A function that may throw an {@link SQLException}.
+ */
+@FunctionalInterface
+public interface SqlFunction<T, R> {
+
+    R apply(T t) throws SQLException;
+}
@@ -0,0 +1,15 @@
+package dev.splityosis.nucleuscore.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds parameters to a prepared statement.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    StatementBinder NONE = statement -> {};
+
+    void bind(PreparedStatement statement) throws SQLException;
+}
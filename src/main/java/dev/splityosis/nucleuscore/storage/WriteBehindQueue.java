@@ -0,0 +1,435 @@
+package dev.splityosis.nucleuscore.storage;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.exceptions.WriteBehindException;
+import org.bukkit.Bukkit;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for high frequency writes. Writes are coalesced by key, so only the latest value of a key is
+ * written, and flushed as JDBC batches in a single transaction once the batch size is reached or the flush interval
+ * passes. A batch that fails is written again one entry at a time, so a single bad entry is dropped rather than
+ * holding back the rest, entries that keep failing are retried with a growing delay and dropped after a few attempts.
+ * Create one through {@link ModuleDatabase#createWriteBehindQueue(String, EntryBinder)}, it is drained when the
+ * owning module is disabled.
+ */
+public class WriteBehindQueue<K, V> {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int CLOSE_ATTEMPTS = 3;
+    private static final long BASE_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final Nucleus nucleus;
+    private final DatabaseConnectionManager connectionManager;
+    private final DatabaseExecutor executor;
+    private final String sql;
+    private final EntryBinder<K, V> binder;
+    private final int batchSize;
+    private final int capacity;
+    private final ScheduledFuture<?> intervalTask;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<K, V> pending = new LinkedHashMap<>();
+    private final Map<K, Integer> attempts = new HashMap<>();
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+    private boolean flushQueued = false;
+    private boolean closed = false;
+    private int consecutiveFailures = 0;
+    private long retryNotBefore = 0;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    WriteBehindQueue(Nucleus nucleus, DatabaseConnectionManager connectionManager, DatabaseExecutor executor, String sql, EntryBinder<K, V> binder, int batchSize, int capacity, long flushIntervalMillis) {
+        this.nucleus = nucleus;
+        this.connectionManager = connectionManager;
+        this.executor = executor;
+        this.sql = sql;
+        this.binder = binder;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.intervalTask = executor.scheduleAtFixedRate(this::flushIfDue, flushIntervalMillis, flushIntervalMillis);
+    }
+
+    /**
+     * Queues a write without blocking. A pending write for the same key is replaced.
+     * @return False if the queue is full (or closed) and the write was rejected, a flush is triggered in that case.
+     */
+    public boolean offer(K key, V value) {
+        synchronized (lock) {
+            if (closed) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (pending.containsKey(key)) {
+                pending.put(key, value);
+                attempts.remove(key);
+                coalesced.incrementAndGet();
+                return true;
+            }
+            if (pending.size() >= capacity) {
+                rejected.incrementAndGet();
+                flushIfDue();
+                return false;
+            }
+            pending.put(key, value);
+            attempts.remove(key);
+            if (pending.size() >= batchSize)
+                flushIfDue();
+            return true;
+        }
+    }
+
+    /**
+     * Queues a write, waiting for space if the queue is full. Must not be called on the main thread.
+     * @throws TimeoutException If there still was no space after the timeout.
+     * @throws IllegalStateException If called on the main thread or the queue is closed.
+     */
+    public void put(K key, V value, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (Bukkit.isPrimaryThread())
+            throw new IllegalStateException("WriteBehindQueue#put would block the main thread, use offer instead");
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!closed && !pending.containsKey(key) && pending.size() >= capacity) {
+                flushIfDue();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    throw new TimeoutException("WriteBehindQueue is full");
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            if (closed)
+                throw new IllegalStateException("WriteBehindQueue is closed");
+            attempts.remove(key);
+            if (pending.put(key, value) != null)
+                coalesced.incrementAndGet();
+            else if (pending.size() >= batchSize)
+                flushIfDue();
+        }
+    }
+
+    /**
+     * Writes everything that is pending, even if failed writes are waiting for their retry delay.
+     * @return A future that completes once the pending writes are written, or completes exceptionally with a
+     * {@link WriteBehindException} if some of them couldn't be written.
+     */
+    public CompletableFuture<Void> flush() {
+        synchronized (lock) {
+            if (pending.isEmpty() || flushQueued)
+                return lastFlush;
+            flushQueued = true;
+            // Flushes run one after another so writes to the same key can never be reordered
+            lastFlush = lastFlush.handle((result, throwable) -> null).thenCompose(ignored -> writePending());
+            return lastFlush;
+        }
+    }
+
+    /**
+     * Flushes unless failed writes are waiting for their retry delay.
+     */
+    private void flushIfDue() {
+        synchronized (lock) {
+            if (System.currentTimeMillis() < retryNotBefore)
+                return;
+            flush();
+        }
+    }
+
+    /**
+     * Stops accepting writes and writes everything that is pending, failed writes are retried a few times. This
+     * method is automatically called when the owning module is disabled.
+     * @return A future that completes once the queue is drained, or completes exceptionally with a
+     * {@link WriteBehindException} holding the amount of writes that were lost.
+     */
+    public CompletableFuture<Void> close() {
+        long failedBefore;
+        synchronized (lock) {
+            closed = true;
+            intervalTask.cancel(false);
+            lock.notifyAll();
+            failedBefore = failed.get();
+        }
+        return drain(1, failedBefore);
+    }
+
+    private CompletableFuture<Void> drain(int attempt, long failedBefore) {
+        return flush().handle((result, throwable) -> throwable).thenCompose(throwable -> {
+            int left;
+            synchronized (lock) {
+                left = pending.size();
+                if (left != 0 && attempt < CLOSE_ATTEMPTS)
+                    return drain(attempt + 1, failedBefore);
+                // Nothing flushes a closed queue again, what's left is lost
+                pending.clear();
+                attempts.clear();
+                lock.notifyAll();
+            }
+            failed.addAndGet(left);
+            long lost = failed.get() - failedBefore;
+            if (lost == 0)
+                return CompletableFuture.completedFuture(null);
+            nucleus.log("&c"+lost+" queued writes couldn't be written before the queue closed, they are lost.");
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new WriteBehindException(lost+" queued writes were lost while closing", (int) lost, throwable));
+            return future;
+        });
+    }
+
+    private CompletableFuture<Void> writePending() {
+        Map<K, V> snapshot;
+        synchronized (lock) {
+            flushQueued = false;
+            snapshot = new LinkedHashMap<>(pending);
+            pending.clear();
+            lock.notifyAll();
+        }
+        if (snapshot.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                Throwable error = write(snapshot);
+                if (error == null)
+                    future.complete(null);
+                else
+                    future.completeExceptionally(error);
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        };
+        try {
+            executor.submitWrite(task);
+        } catch (RejectedExecutionException e) {
+            // Database executor is saturated or shutting down, the writes are retried by the next flush rather than
+            // written on this thread, which may be the main thread holding the queue's lock
+            retryLater(snapshot, false);
+            future.completeExceptionally(new WriteBehindException(snapshot.size()+" queued writes couldn't be submitted", snapshot.size(), e));
+        }
+        return future;
+    }
+
+    /**
+     * Writes the entries as a batch, or one at a time if the batch fails.
+     * @return Null if every entry was written, the error otherwise.
+     */
+    private Throwable write(Map<K, V> entries) {
+        Connection connection;
+        try {
+            connection = connectionManager.getWriteConnection();
+        } catch (Throwable throwable) {
+            // Nothing was tried, so no entry is to blame
+            nucleus.log("&cCouldn't get a connection to write "+entries.size()+" queued writes, retrying later.");
+            throwable.printStackTrace();
+            retryLater(entries, false);
+            return new WriteBehindException(entries.size()+" queued writes couldn't be written", entries.size(), throwable);
+        }
+
+        try {
+            try {
+                writeBatch(connection, entries);
+                written.addAndGet(entries.size());
+                onWritten(entries.keySet(), true);
+                return null;
+            } catch (Throwable throwable) {
+                nucleus.log("&cAn error occurred while writing "+entries.size()+" queued writes"+(entries.size() > 1 ? ", writing them one at a time." : "."));
+                throwable.printStackTrace();
+                return writeOneByOne(connection, entries, throwable);
+            }
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the entries of a failed batch one at a time. Entries failing while others go through are bad entries
+     * and dropped, if nothing goes through they are retried later.
+     */
+    private Throwable writeOneByOne(Connection connection, Map<K, V> entries, Throwable batchError) {
+        Map<K, V> failedEntries = new LinkedHashMap<>();
+        Map<K, V> untried = new LinkedHashMap<>();
+        Throwable error = batchError;
+        int writtenEntries = 0;
+        if (entries.size() == 1)
+            failedEntries.putAll(entries);
+        else {
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                if (!untried.isEmpty()) {
+                    untried.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                try {
+                    writeBatch(connection, Collections.singletonMap(entry.getKey(), entry.getValue()));
+                    written.incrementAndGet();
+                    onWritten(Collections.singleton(entry.getKey()), false);
+                    writtenEntries++;
+                } catch (Throwable throwable) {
+                    error = throwable;
+                    // A broken connection isn't the entry's fault, the rest waits for the next attempt
+                    if (isConnectionError(throwable))
+                        untried.put(entry.getKey(), entry.getValue());
+                    else
+                        failedEntries.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        if (writtenEntries != 0 && !failedEntries.isEmpty())
+            drop(failedEntries, error);
+        else
+            retryLater(failedEntries, true);
+        retryLater(untried, false);
+        if (failedEntries.isEmpty() && untried.isEmpty()) {
+            onWritten(Collections.emptySet(), true);
+            return null;
+        }
+        int failedWrites = failedEntries.size() + untried.size();
+        return new WriteBehindException(failedWrites+" of "+entries.size()+" queued writes couldn't be written", failedWrites, error);
+    }
+
+    private static boolean isConnectionError(Throwable throwable) {
+        return throwable instanceof SQLRecoverableException || throwable instanceof SQLNonTransientConnectionException || throwable instanceof SQLTransientConnectionException;
+    }
+
+    private void writeBatch(Connection connection, Map<K, V> entries) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int count = 0;
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                binder.bind(statement, entry.getKey(), entry.getValue());
+                statement.addBatch();
+                if (++count % batchSize == 0) {
+                    statement.executeBatch();
+                    batches.incrementAndGet();
+                }
+            }
+            if (count % batchSize != 0) {
+                statement.executeBatch();
+                batches.incrementAndGet();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void onWritten(Set<K> keys, boolean batchSucceeded) {
+        synchronized (lock) {
+            for (K key : keys)
+                attempts.remove(key);
+            if (batchSucceeded) {
+                consecutiveFailures = 0;
+                retryNotBefore = 0;
+            }
+        }
+    }
+
+    /**
+     * Puts failed writes back unless they were superseded in the meantime, they are retried once the retry delay
+     * passed. Entries that failed too often are dropped.
+     * @param countAttempt Whether the entries were tried and failed, rather than never reaching the database.
+     */
+    private void retryLater(Map<K, V> entries, boolean countAttempt) {
+        if (entries.isEmpty())
+            return;
+        Map<K, V> exhausted = new LinkedHashMap<>();
+        synchronized (lock) {
+            LinkedHashMap<K, V> merged = new LinkedHashMap<>();
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                K key = entry.getKey();
+                if (pending.containsKey(key))
+                    continue;
+                int attempt = countAttempt ? attempts.merge(key, 1, Integer::sum) : attempts.getOrDefault(key, 0);
+                if (attempt >= MAX_ATTEMPTS)
+                    exhausted.put(key, entry.getValue());
+                else
+                    merged.put(key, entry.getValue());
+            }
+            merged.putAll(pending);
+            pending.clear();
+            pending.putAll(merged);
+
+            consecutiveFailures++;
+            long delay = BASE_RETRY_DELAY_MILLIS << Math.min(consecutiveFailures - 1, 16);
+            retryNotBefore = System.currentTimeMillis() + Math.min(delay, MAX_RETRY_DELAY_MILLIS);
+        }
+        if (!exhausted.isEmpty())
+            drop(exhausted, null);
+    }
+
+    private void drop(Map<K, V> entries, Throwable error) {
+        synchronized (lock) {
+            for (K key : entries.keySet())
+                attempts.remove(key);
+        }
+        failed.addAndGet(entries.size());
+        List<K> keys = new ArrayList<>(entries.keySet());
+        String shown = keys.size() > 10 ? keys.subList(0, 10) + " and " + (keys.size() - 10) + " more" : keys.toString();
+        nucleus.log("&cDropped "+entries.size()+" queued writes that kept failing: "+shown+(error == null ? "" : " ("+error.getMessage()+")"));
+    }
+
+    /**
+     * @return Amount of writes waiting to be flushed.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return Amount of writes that replaced a pending write of the same key.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return Amount of writes that were dropped because they kept failing or were left when the queue closed.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public boolean isClosed() {
+        synchronized (lock) {
+            return closed;
+        }
+    }
+
+    /**
+     * Binds a queued entry to the queue's statement.
+     */
+    @FunctionalInterface
+    public interface EntryBinder<K, V> {
+
+        void bind(PreparedStatement statement, K key, V value) throws SQLException;
+    }
+}
@@ -0,0 +1,40 @@
+package dev.splityosis.nucleuscore.text;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Decides which online players receive a broadcast. Audiences are tested on the main thread.
+ */
+@FunctionalInterface
+public interface Audience {
+
+    boolean includes(Player player);
+
+    /**
+     * @return An audience of players included by both audiences.
+     */
+    default Audience and(Audience other) {
+        return player -> includes(player) && other.includes(player);
+    }
+
+    /**
+     * @return An audience of every online player.
+     */
+    static Audience all() {
+        return player -> true;
+    }
+
+    /**
+     * @return An audience of players that have the permission.
+     */
+    static Audience permission(String permission) {
+        return player -> player.hasPermission(permission);
+    }
+
+    /**
+     * @return An audience of players in the world with the given name.
+     */
+    static Audience world(String worldName) {
+        return player -> player.getWorld().getName().equals(worldName);
+    }
+}
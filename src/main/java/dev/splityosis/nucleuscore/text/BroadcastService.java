@@ -0,0 +1,163 @@
+package dev.splityosis.nucleuscore.text;
+
+import dev.splityosis.nucleuscore.Nucleus;
+import dev.splityosis.nucleuscore.NucleusUtil;
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broadcasts messages that are rendered once, when queued, rather than for every player. Broadcasts queued during a
+ * tick are sent together at the end of it, every player gets all lines meant for them in a single message. Modules
+ * can be rate limited so a misbehaving module can't spam the chat.
+ */
+public class BroadcastService {
+
+    private final Nucleus nucleus;
+    private final Map<String, RateLimit> rateLimits = new ConcurrentHashMap<>();
+    private List<PendingBroadcast> pending = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    public BroadcastService(Nucleus nucleus) {
+        this.nucleus = nucleus;
+    }
+
+    /**
+     * Queues a broadcast to every online player.
+     * @see #broadcast(Module, List, Audience)
+     */
+    public boolean broadcast(Module module, String message) {
+        return broadcast(module, Collections.singletonList(message), Audience.all());
+    }
+
+    public boolean broadcast(Module module, String message, Audience audience) {
+        return broadcast(module, Collections.singletonList(message), audience);
+    }
+
+    /**
+     * Queues a broadcast, colors are translated once right away.
+     * @param module The module broadcasting, used for rate limiting, may be null.
+     * @param message The message lines.
+     * @param audience Who receives it.
+     * @return False if the module is over its rate limit and the broadcast was dropped.
+     */
+    public boolean broadcast(Module module, List<String> message, Audience audience) {
+        return queue(module, NucleusUtil.colorize(message), audience);
+    }
+
+    /**
+     * Queues a broadcast of a message template, it's rendered once right away.
+     * @return False if the module is over its rate limit and the broadcast was dropped.
+     */
+    public boolean broadcast(Module module, MessageTemplate template, Placeholders placeholders, Audience audience) {
+        return queue(module, template.render(placeholders), audience);
+    }
+
+    private boolean queue(Module module, List<String> lines, Audience audience) {
+        if (module != null) {
+            RateLimit rateLimit = rateLimits.get(module.getName().toLowerCase());
+            if (rateLimit != null && !rateLimit.tryAcquire())
+                return false;
+        }
+
+        synchronized (this) {
+            pending.add(new PendingBroadcast(lines, audience));
+            if (flushScheduled)
+                return true;
+            flushScheduled = true;
+        }
+        JavaPlugin plugin = nucleus.getPlugin();
+        if (plugin.isEnabled())
+            Bukkit.getScheduler().runTask(plugin, this::flush);
+        else
+            flush();
+        return true;
+    }
+
+    /**
+     * Sends every queued broadcast now. This is called once per tick while broadcasts are queued.
+     */
+    public void flush() {
+        List<PendingBroadcast> broadcasts;
+        synchronized (this) {
+            broadcasts = pending;
+            pending = new ArrayList<>();
+            flushScheduled = false;
+        }
+        if (broadcasts.isEmpty())
+            return;
+
+        List<String> lines = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            lines.clear();
+            for (PendingBroadcast broadcast : broadcasts) {
+                if (broadcast.audience.includes(player))
+                    lines.addAll(broadcast.lines);
+            }
+            if (!lines.isEmpty())
+                player.sendMessage(lines.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Limits how many broadcasts a module may queue, broadcasts over the limit are dropped.
+     * @param module The module.
+     * @param broadcasts Amount of broadcasts allowed per window.
+     * @param windowMillis The window's length.
+     */
+    public void setRateLimit(Module module, int broadcasts, long windowMillis) {
+        rateLimits.put(module.getName().toLowerCase(), new RateLimit(broadcasts, windowMillis));
+    }
+
+    public void removeRateLimit(Module module) {
+        rateLimits.remove(module.getName().toLowerCase());
+    }
+
+    /**
+     * @return Amount of broadcasts waiting for the end of the tick.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private static class PendingBroadcast {
+        private final List<String> lines;
+        private final Audience audience;
+
+        private PendingBroadcast(List<String> lines, Audience audience) {
+            this.lines = lines;
+            this.audience = audience;
+        }
+    }
+
+    private static class RateLimit {
+        private final int broadcasts;
+        private final long windowMillis;
+        private long windowStart;
+        private int count;
+
+        private RateLimit(int broadcasts, long windowMillis) {
+            this.broadcasts = broadcasts;
+            this.windowMillis = windowMillis;
+        }
+
+        private synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= windowMillis) {
+                windowStart = now;
+                count = 0;
+            }
+            if (count >= broadcasts)
+                return false;
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package dev.splityosis.nucleuscore.text;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An item whose display name and lore are compiled once into {@link MessageTemplate}s. Rendering clones the base item
+ * and fetches and sets its meta exactly once, no matter how many placeholders it has. Rendered items can optionally be
+ * cached by their bound values, which suits menus showing the same items over and over.
+ */
+public class ItemTemplate {
+
+    private final ItemStack base;
+    private final MessageTemplate displayName;
+    private final MessageTemplate lore;
+    private final String[] placeholders;
+    private final ItemStack staticItem;
+    private Map<String, ItemStack> renderCache;
+
+    private ItemTemplate(ItemStack base, MessageTemplate displayName, MessageTemplate lore) {
+        this.base = base;
+        this.displayName = displayName;
+        this.lore = lore;
+        TreeSet<String> names = new TreeSet<>();
+        if (displayName != null)
+            displayName.collectPlaceholders(names);
+        if (lore != null)
+            lore.collectPlaceholders(names);
+        this.placeholders = names.toArray(new String[0]);
+        // Items without placeholders are rendered once, only the colors are translated
+        this.staticItem = placeholders.length == 0 ? build(null) : null;
+    }
+
+    /**
+     * Compiles the display name and lore of an item. The item is copied, changing it afterwards doesn't affect the
+     * template.
+     */
+    public static ItemTemplate compile(ItemStack itemStack) {
+        ItemStack base = itemStack.clone();
+        ItemMeta meta = base.getItemMeta();
+        if (meta == null)
+            return new ItemTemplate(base, null, null);
+        MessageTemplate displayName = meta.hasDisplayName() ? MessageTemplate.compile(meta.getDisplayName()) : null;
+        MessageTemplate lore = meta.hasLore() ? MessageTemplate.compile(meta.getLore()) : null;
+        return new ItemTemplate(base, displayName, lore);
+    }
+
+    /**
+     * Caches up to the given amount of rendered items by their bound values, the least recently used are dropped first.
+     * Only use this when the same values come up repeatedly.
+     * @param maximumSize Maximum amount of cached items, 0 to disable caching.
+     */
+    public ItemTemplate cacheRenders(int maximumSize) {
+        synchronized (this) {
+            if (maximumSize <= 0) {
+                renderCache = null;
+                return this;
+            }
+            renderCache = new LinkedHashMap<String, ItemStack>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ItemStack> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+        return this;
+    }
+
+    /**
+     * Renders the item.
+     * @param bound The bound values, may be null.
+     * @return A new item, it can be changed freely.
+     */
+    public ItemStack render(Placeholders bound) {
+        if (staticItem != null)
+            return staticItem.clone();
+
+        String key;
+        synchronized (this) {
+            if (renderCache == null)
+                return build(bound);
+            key = cacheKey(bound);
+            ItemStack cached = renderCache.get(key);
+            if (cached != null)
+                return cached.clone();
+        }
+        ItemStack item = build(bound);
+        synchronized (this) {
+            if (renderCache != null)
+                renderCache.put(key, item);
+        }
+        return item.clone();
+    }
+
+    public ItemStack render() {
+        return render(null);
+    }
+
+    /**
+     * Drops every cached render.
+     */
+    public void clearCache() {
+        synchronized (this) {
+            if (renderCache != null)
+                renderCache.clear();
+        }
+    }
+
+    /**
+     * @return A copy of the item the template was compiled from.
+     */
+    public ItemStack getBase() {
+        return base.clone();
+    }
+
+    private ItemStack build(Placeholders bound) {
+        ItemStack item = base.clone();
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null)
+            return item;
+        if (displayName != null)
+            meta.setDisplayName(displayName.renderJoined(bound));
+        if (lore != null)
+            meta.setLore(lore.render(bound));
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    private String cacheKey(Placeholders bound) {
+        StringBuilder builder = new StringBuilder();
+        for (String name : placeholders) {
+            String value = bound == null ? null : bound.get(name);
+            // Separators that can't appear in values, so different values never share a key
+            builder.append(value == null ? "\u0001" : value).append('\u0000');
+        }
+        return builder.toString();
+    }
+}
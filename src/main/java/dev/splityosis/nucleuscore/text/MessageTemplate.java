@@ -0,0 +1,179 @@
+package dev.splityosis.nucleuscore.text;
+
+import dev.splityosis.nucleuscore.NucleusUtil;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message compiled once into literal and '%placeholder%' segments, with colors already translated. Rendering fills
+ * in the bound values in a single pass, lines without placeholders are never copied.
+ */
+public class MessageTemplate {
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    private final List<Line> lines;
+    private final List<String> staticLines;
+
+    private MessageTemplate(List<Line> lines) {
+        this.lines = lines;
+        List<String> rendered = new ArrayList<>(lines.size());
+        boolean isStatic = true;
+        for (Line line : lines) {
+            if (line.placeholders.length != 0)
+                isStatic = false;
+            rendered.add(line.literals[0]);
+        }
+        this.staticLines = isStatic ? Collections.unmodifiableList(rendered) : null;
+    }
+
+    /**
+     * Compiles a single line message.
+     */
+    public static MessageTemplate compile(String message) {
+        return compile(Collections.singletonList(message));
+    }
+
+    /**
+     * Compiles a multi line message.
+     */
+    public static MessageTemplate compile(List<String> message) {
+        List<Line> lines = new ArrayList<>(message.size());
+        for (String line : message)
+            lines.add(Line.parse(line == null ? "" : line));
+        return new MessageTemplate(lines);
+    }
+
+    /**
+     * Renders the message without binding any placeholders, they are kept as they are.
+     */
+    public List<String> render() {
+        return render(null);
+    }
+
+    /**
+     * Renders the message. Placeholders without a bound value are kept as they are.
+     * @param placeholders The bound values, may be null.
+     * @return The rendered lines.
+     */
+    public List<String> render(Placeholders placeholders) {
+        if (staticLines != null)
+            return staticLines;
+        List<String> rendered = new ArrayList<>(lines.size());
+        for (Line line : lines)
+            rendered.add(line.render(placeholders));
+        return rendered;
+    }
+
+    /**
+     * Renders the message as a single string, lines are separated by '\n'.
+     */
+    public String renderJoined(Placeholders placeholders) {
+        if (lines.size() == 1)
+            return lines.get(0).render(placeholders);
+        return String.join("\n", render(placeholders));
+    }
+
+    /**
+     * Renders the message and sends it.
+     */
+    public void send(CommandSender to, Placeholders placeholders) {
+        for (String line : render(placeholders))
+            to.sendMessage(line);
+    }
+
+    public void send(CommandSender to) {
+        send(to, null);
+    }
+
+    /**
+     * @return Whether the message has no placeholders, rendering it then never allocates.
+     */
+    public boolean isStatic() {
+        return staticLines != null;
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Adds the names of the message's placeholders to the given collection.
+     */
+    void collectPlaceholders(Collection<String> names) {
+        for (Line line : lines)
+            Collections.addAll(names, line.placeholders);
+    }
+
+    /**
+     * A compiled line, literals[i] comes before placeholders[i] and the last literal ends the line.
+     */
+    private static class Line {
+        private final String[] literals;
+        private final String[] placeholders;
+        private final int literalLength;
+
+        private Line(String[] literals, String[] placeholders) {
+            this.literals = literals;
+            this.placeholders = placeholders;
+            int length = 0;
+            for (String literal : literals)
+                length += literal.length();
+            this.literalLength = length;
+        }
+
+        private static Line parse(String line) {
+            List<String> literals = new ArrayList<>();
+            List<String> placeholders = new ArrayList<>();
+            int literalStart = 0;
+            int i = line.indexOf('%');
+            while (i != -1) {
+                int end = line.indexOf('%', i + 1);
+                if (end == -1)
+                    break;
+                if (isPlaceholderName(line, i + 1, end)) {
+                    literals.add(NucleusUtil.colorize(line.substring(literalStart, i)));
+                    placeholders.add(line.substring(i + 1, end));
+                    literalStart = end + 1;
+                    i = line.indexOf('%', literalStart);
+                }
+                else
+                    i = end;
+            }
+            literals.add(NucleusUtil.colorize(line.substring(literalStart)));
+            return new Line(literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+        }
+
+        private static boolean isPlaceholderName(String line, int start, int end) {
+            if (start == end)
+                return false;
+            for (int i = start; i < end; i++) {
+                if (Character.isWhitespace(line.charAt(i)))
+                    return false;
+            }
+            return true;
+        }
+
+        private String render(Placeholders bound) {
+            if (placeholders.length == 0)
+                return literals[0];
+            StringBuilder builder = BUILDER.get();
+            builder.setLength(0);
+            builder.ensureCapacity(literalLength + placeholders.length * 16);
+            for (int i = 0; i < placeholders.length; i++) {
+                builder.append(literals[i]);
+                String value = bound == null ? null : bound.get(placeholders[i]);
+                if (value == null)
+                    builder.append('%').append(placeholders[i]).append('%');
+                else
+                    builder.append(value);
+            }
+            builder.append(literals[placeholders.length]);
+            return builder.toString();
+        }
+    }
+}
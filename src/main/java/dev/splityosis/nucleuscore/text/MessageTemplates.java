@@ -0,0 +1,88 @@
+package dev.splityosis.nucleuscore.text;
+
+import dev.splityosis.nucleuscore.module.Module;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A module's messages, declared under the 'messages' section of its config. Messages are compiled into
+ * {@link MessageTemplate}s when declared and again when the module is reloaded.
+ */
+public class MessageTemplates {
+
+    private static final String SECTION = "messages.";
+
+    private final Module module;
+    private final Map<String, List<String>> declared = new ConcurrentHashMap<>();
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+    public MessageTemplates(Module module) {
+        this.module = module;
+    }
+
+    /**
+     * Declares a message, writing the default to the module's config if it isn't there yet, and compiles it.
+     * @param key The message's key under the 'messages' section.
+     * @param defaultLines The default message, one or more lines.
+     * @return The compiled message.
+     */
+    public MessageTemplate declare(String key, String... defaultLines) {
+        declared.put(key, Arrays.asList(defaultLines));
+        MessageTemplate template = compile(key);
+        templates.put(key, template);
+        return template;
+    }
+
+    /**
+     * Gets a compiled message. Don't keep the returned template around, it's replaced when the module is reloaded.
+     * @param key The message's key under the 'messages' section.
+     * @throws IllegalArgumentException If the message was never declared and isn't in the config.
+     */
+    public MessageTemplate get(String key) {
+        MessageTemplate template = templates.get(key);
+        if (template != null)
+            return template;
+        if (!module.getConfig().contains(SECTION + key))
+            throw new IllegalArgumentException("Module '"+module.getName()+"' has no message '"+key+"'");
+        return templates.computeIfAbsent(key, this::compile);
+    }
+
+    /**
+     * Renders a message and sends it.
+     */
+    public void send(CommandSender to, String key, Placeholders placeholders) {
+        get(key).send(to, placeholders);
+    }
+
+    public void send(CommandSender to, String key) {
+        get(key).send(to);
+    }
+
+    /**
+     * Recompiles every message from the module's current config. This method is automatically called after the module
+     * is reloaded.
+     */
+    public void reload() {
+        templates.clear();
+        for (String key : declared.keySet())
+            templates.put(key, compile(key));
+    }
+
+    private MessageTemplate compile(String key) {
+        FileConfiguration config = module.getConfig();
+        String path = SECTION + key;
+        if (!config.contains(path)) {
+            List<String> defaultLines = declared.get(key);
+            config.set(path, defaultLines.size() == 1 ? defaultLines.get(0) : defaultLines);
+            module.saveConfig();
+        }
+        if (config.isList(path))
+            return MessageTemplate.compile(config.getStringList(path));
+        return MessageTemplate.compile(config.getString(path, ""));
+    }
+}
@@ -0,0 +1,61 @@
+package dev.splityosis.nucleuscore.text;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values bound to the placeholders of a {@link MessageTemplate}, by placeholder name without the surrounding '%'.
+ * Values are inserted as they are, color codes in them are not translated.
+ */
+public class Placeholders {
+
+    private final Map<String, String> values;
+
+    public Placeholders() {
+        this.values = new HashMap<>();
+    }
+
+    private Placeholders(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates placeholders from name value pairs, such as {@code Placeholders.of("player", name, "amount", 5)}.
+     */
+    public static Placeholders of(Object... namesAndValues) {
+        if (namesAndValues.length % 2 != 0)
+            throw new IllegalArgumentException("Placeholders must be given as name value pairs");
+        Placeholders placeholders = new Placeholders(new HashMap<>(namesAndValues.length));
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            placeholders.set(String.valueOf(namesAndValues[i]), namesAndValues[i + 1]);
+        return placeholders;
+    }
+
+    /**
+     * Binds a value to a placeholder.
+     * @param name The placeholder's name, without the surrounding '%'.
+     * @param value The value, null is rendered as "null".
+     */
+    public Placeholders set(String name, Object value) {
+        values.put(name, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * @return The bound value, or null if the placeholder isn't bound.
+     */
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * @return A copy that can be changed without affecting these placeholders.
+     */
+    public Placeholders copy() {
+        return new Placeholders(new HashMap<>(values));
+    }
+}